@@ -0,0 +1,74 @@
+package xyz.rgnt.revoken.common.providers.storage.data;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks path access on JSON and YAML implementations of {@link AuxData}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuxDataBenchmark {
+
+    /**
+     * Count of sectors on each level of synthetic data tree
+     */
+    @Param({"4", "16"})
+    private int width;
+
+    private AuxData jsonData;
+    private AuxData yamlData;
+
+    private String[] paths;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.jsonData = AuxData.fromEmptyJson();
+        this.yamlData = AuxData.fromYaml(new YamlConfiguration());
+
+        this.paths = new String[width * width * width];
+        int index = 0;
+        for (int a = 0; a < width; a++)
+            for (int b = 0; b < width; b++)
+                for (int c = 0; c < width; c++) {
+                    final String path = "sector-" + a + ".sector-" + b + ".value-" + c;
+                    this.paths[index++] = path;
+
+                    this.jsonData.setInt(path, a * b * c);
+                    this.yamlData.setInt(path, a * b * c);
+                }
+    }
+
+    private String nextPath() {
+        final String path = this.paths[this.cursor];
+        this.cursor = (this.cursor + 1) % this.paths.length;
+        return path;
+    }
+
+    @Benchmark
+    public void jsonGet(Blackhole blackhole) {
+        blackhole.consume(this.jsonData.getInt(nextPath()));
+    }
+
+    @Benchmark
+    public void jsonSet() {
+        this.jsonData.setInt(nextPath(), this.cursor);
+    }
+
+    @Benchmark
+    public void yamlGet(Blackhole blackhole) {
+        blackhole.consume(this.yamlData.getInt(nextPath()));
+    }
+
+    @Benchmark
+    public void yamlSet() {
+        this.yamlData.setInt(nextPath(), this.cursor);
+    }
+}
@@ -0,0 +1,100 @@
+package xyz.rgnt.revoken.common.providers.storage.flatfile.store;
+
+import com.google.gson.JsonObject;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xyz.rgnt.revoken.common.Revoken;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks full save/load round trip of JSON and YAML {@link AStore}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AStoreBenchmark {
+
+    /**
+     * Count of entries in synthetic store
+     */
+    @Param({"10", "1000", "100000"})
+    private int entries;
+
+    private Path dataFolder;
+    private Revoken<?> instance;
+
+    private JsonObject jsonSource;
+    private YamlConfiguration yamlSource;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.dataFolder = Files.createTempDirectory("astore-benchmark");
+        this.instance = new Revoken<>() {
+            @Override
+            public Object instance() {
+                return this;
+            }
+
+            @Override
+            public @Nullable InputStream getResource(@NotNull String resourcePath) {
+                return null;
+            }
+
+            @Override
+            public @NotNull File getDataFolder() {
+                return dataFolder.toFile();
+            }
+        };
+
+        final JsonObject attackers = new JsonObject();
+        this.yamlSource = new YamlConfiguration();
+        for (int i = 0; i < entries; i++) {
+            final String key = new UUID(i, ~i).toString();
+            attackers.addProperty(key, i);
+            this.yamlSource.set("attackers." + key, i);
+        }
+        this.jsonSource = new JsonObject();
+        this.jsonSource.add("attackers", attackers);
+        this.jsonSource.addProperty("health_points", entries);
+        this.yamlSource.set("health_points", entries);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (var files = Files.walk(this.dataFolder)) {
+            files.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void jsonRoundTrip(Blackhole blackhole) throws Exception {
+        final AStore store = AStore.makeJson(this.instance, "", "benchmark.json", false);
+        store.setUnderlyingDataSource(this.jsonSource);
+        store.save();
+
+        blackhole.consume(AStore.makeJson(this.instance, "", "benchmark.json", false).prepare().getData());
+    }
+
+    @Benchmark
+    public void yamlRoundTrip(Blackhole blackhole) throws Exception {
+        final AStore store = AStore.makeYaml(this.instance, "", "benchmark.yaml", false);
+        store.setUnderlyingDataSource(this.yamlSource);
+        store.save();
+
+        blackhole.consume(AStore.makeYaml(this.instance, "", "benchmark.yaml", false).prepare().getData());
+    }
+}
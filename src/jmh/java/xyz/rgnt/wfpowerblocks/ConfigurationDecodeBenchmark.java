@@ -0,0 +1,88 @@
+package xyz.rgnt.wfpowerblocks;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xyz.rgnt.revoken.common.providers.storage.data.AuxData;
+import xyz.rgnt.wfpowerblocks.block.PowerBlock;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks decoding of {@link PowerBlocksMngr.Configuration} and power block codecs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConfigurationDecodeBenchmark {
+
+    /**
+     * Count of power block sections in synthetic configuration
+     */
+    @Param({"10", "100", "1000"})
+    private int powerBlocks;
+
+    private PowerBlocksMngr mngr;
+    private AuxData data;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // manager is not initialized, plugin instance is used only by storage operations
+        this.mngr = new PowerBlocksMngr(null);
+
+        final YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("data.save-interval-minutes", 180);
+        yaml.set("settings.sounds.break-sound.sound-name", "BLOCK_BELL_USE");
+        yaml.set("settings.sounds.break-sound.volume", 2);
+        yaml.set("settings.sounds.respawn-sound.sound-name", "");
+        yaml.set("settings.sounds.defeat-sound.sound-name", "");
+        yaml.set("settings.particles.break-particle.particle-name", "SMOKE_LARGE");
+        yaml.set("settings.particles.break-particle.count", 10);
+        yaml.set("settings.particles.respawn-particle.particle-name", "");
+        yaml.set("settings.particles.defeat-particle.particle-name", "");
+        yaml.set("messages.pwb-defeated", Arrays.asList(
+                "<pwb-name>",
+                "<1-attacker> - <1-attacker-damage>",
+                "<2-attacker> - <2-attacker-damage>",
+                "<3-attacker> - <3-attacker-damage>"
+        ));
+
+        for (int i = 0; i < powerBlocks; i++) {
+            final String root = "power-blocks.pwb" + i + ".";
+            yaml.set(root + "material", "DIAMOND_BLOCK");
+            yaml.set(root + "name", "<gradient:#FF6F91:#FFC75F>Pwb " + i + "</gradient>");
+            yaml.set(root + "health-points", 100 + i);
+            yaml.set(root + "respawn-count", 3);
+            yaml.set(root + "location.world", "world");
+            yaml.set(root + "location.location.x", i);
+            yaml.set(root + "location.location.y", 65);
+            yaml.set(root + "location.location.z", -i);
+            for (int position = 1; position <= 3; position++)
+                yaml.set(root + "rewards." + position, Arrays.asList(
+                        "msg %player% You placed on position " + position + "!",
+                        "@say gg"
+                ));
+        }
+        this.data = AuxData.fromYaml(yaml);
+    }
+
+    @Benchmark
+    public void decodeConfiguration(Blackhole blackhole) throws Exception {
+        final var configuration = this.mngr.new Configuration();
+        this.data.decode(configuration);
+        blackhole.consume(configuration);
+    }
+
+    @Benchmark
+    public void decodePowerBlockCodecs(Blackhole blackhole) throws Exception {
+        final var sector = this.data.getSector("power-blocks");
+        for (String powerBlockId : sector.getKeys()) {
+            final var codec = new PowerBlock.Codec();
+            sector.getSector(powerBlockId).decode(codec);
+            blackhole.consume(codec);
+        }
+    }
+}
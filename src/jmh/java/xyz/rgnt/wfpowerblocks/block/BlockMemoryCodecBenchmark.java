@@ -0,0 +1,51 @@
+package xyz.rgnt.wfpowerblocks.block;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PowerBlock#encodeBlockMemory(PowerBlock.BlockMemory)} and {@link PowerBlock#decodeBlockMemory(JsonObject)}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BlockMemoryCodecBenchmark {
+
+    /**
+     * Count of attackers in synthetic block memory
+     */
+    @Param({"10", "1000", "100000"})
+    private int attackers;
+
+    private PowerBlock.BlockMemory memory;
+    private JsonObject encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final SplittableRandom random = new SplittableRandom(attackers);
+
+        this.memory = new PowerBlock.BlockMemory();
+        this.memory.increaseHealth(Integer.MAX_VALUE / 2);
+        for (int i = 0; i < attackers; i++)
+            this.memory.damage(new UUID(random.nextLong(), random.nextLong()), 1 + random.nextInt(1000));
+
+        this.encoded = PowerBlock.encodeBlockMemory(this.memory);
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        blackhole.consume(PowerBlock.encodeBlockMemory(this.memory));
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        blackhole.consume(PowerBlock.decodeBlockMemory(this.encoded));
+    }
+}
@@ -0,0 +1,341 @@
+package xyz.rgnt.revoken.common.providers.storage.data;
+
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+import xyz.rgnt.revoken.common.providers.storage.data.codec.AuxCodec;
+import xyz.rgnt.revoken.common.providers.storage.data.codec.ICodec;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Provides common streaming interface for all types of data implementations.
+ * <p>
+ * Unlike {@link AuxData}, writer does not hold any tree in memory. Paths are delimited with dots('.') and
+ * sectors are opened and closed as paths change, so values sharing a parent must be written contiguously.
+ * Writing into sector which was already closed produces duplicate keys.
+ * <p>
+ * Nested codecs with parsable data adapter are stored as string, so each of them is encoded into memory first.
+ */
+public abstract class AuxWriter implements Closeable, Flushable {
+
+    /**
+     * Absolute path of currently open sectors
+     */
+    private final List<String> openPath = new ArrayList<>();
+    /**
+     * Depths at which user opened sectors begin
+     */
+    private final Deque<Integer> sectorDepths = new ArrayDeque<>();
+
+    private boolean started = false;
+    private boolean closed = false;
+
+    /**
+     * Creates writer which streams JSON into specified writer.
+     *
+     * @param writer Writer
+     * @return AuxWriter
+     */
+    public static @NotNull AuxWriter toJson(@NotNull Writer writer) {
+        return new JsonImpl(writer);
+    }
+
+    /**
+     * Creates writer which streams YAML into specified writer.
+     *
+     * @param writer Writer
+     * @return AuxWriter
+     */
+    public static @NotNull AuxWriter toYaml(@NotNull Writer writer) {
+        return new YamlImpl(writer);
+    }
+
+    /**
+     * Creates writer matching type of data adapter.
+     *
+     * @param typeAdapter Type adapter
+     * @param writer      Writer
+     * @return AuxWriter
+     */
+    public static @NotNull AuxWriter of(@NotNull AuxData.TypeAdapter typeAdapter, @NotNull Writer writer) {
+        switch (typeAdapter) {
+            case JSON:
+            case PARSABLE_JSON:
+                return toJson(writer);
+            default:
+                return toYaml(writer);
+        }
+    }
+
+    /**
+     * Writes Object value. Numbers and booleans are written as they are, other values as String.
+     *
+     * @param path  Path to child. Path is delimited with dots('.'). <br>Example: <code>parent0.parent1.child</code>
+     * @param value Value
+     */
+    public void set(@NotNull String path, @Nullable Object value) throws IOException {
+        writeScalar(moveTo(path), value);
+    }
+
+    /**
+     * Writes list of values. Every element is written as String.
+     *
+     * @param path  Path to child. Path is delimited with dots('.'). <br>Example: <code>parent0.parent1.child</code>
+     * @param value Value
+     */
+    public void setStringList(@NotNull String path, @NotNull List<?> value) throws IOException {
+        writeStringList(moveTo(path), value);
+    }
+
+    /**
+     * Opens sector. All following paths are relative to this sector until {@link #endSector()} is called.
+     *
+     * @param path Path to sector. Path is delimited with dots('.'). <br>Example: <code>parent0.parent1.child</code>
+     */
+    public void beginSector(@NotNull String path) throws IOException {
+        final String key = moveTo(path);
+        this.writeBeginMapping(key);
+        this.openPath.add(key);
+        this.sectorDepths.push(this.openPath.size());
+    }
+
+    /**
+     * Closes sector opened by last {@link #beginSector(String)}.
+     */
+    public void endSector() throws IOException {
+        if (this.sectorDepths.isEmpty())
+            throw new IllegalStateException("No sector is open");
+        closeTo(this.sectorDepths.pop() - 1);
+    }
+
+    /**
+     * Encodes class to this writer
+     *
+     * @param codec Class to encode
+     */
+    public void encode(@NotNull ICodec codec) throws Exception {
+        AuxCodec.encodeClass(codec, this);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+        ensureStarted();
+        closeTo(0);
+        this.writeEndDocument();
+        this.closed = true;
+    }
+
+    /**
+     * Aligns open sectors with parent of specified path.
+     *
+     * @param path Relative path
+     * @return Last member of path
+     */
+    private @NotNull String moveTo(@NotNull String path) throws IOException {
+        if (this.closed)
+            throw new IllegalStateException("Writer is closed");
+        if (path.isBlank() || path.startsWith(".") || path.endsWith("."))
+            throw new IllegalArgumentException("Path incomplete!");
+        ensureStarted();
+
+        final String[] members = path.split("\\.");
+        final int base = this.sectorDepths.isEmpty() ? 0 : this.sectorDepths.peek();
+
+        // find common parent of open path and target path
+        int common = base;
+        while (common < this.openPath.size()
+                && common - base < members.length - 1
+                && this.openPath.get(common).equals(members[common - base]))
+            common++;
+        closeTo(common);
+
+        for (int i = common - base; i < members.length - 1; i++) {
+            this.writeBeginMapping(members[i]);
+            this.openPath.add(members[i]);
+        }
+        return members[members.length - 1];
+    }
+
+    private void closeTo(int depth) throws IOException {
+        while (this.openPath.size() > depth) {
+            this.openPath.remove(this.openPath.size() - 1);
+            this.writeEndMapping();
+        }
+    }
+
+    private void ensureStarted() throws IOException {
+        if (this.started)
+            return;
+        this.started = true;
+        this.writeBeginDocument();
+    }
+
+    protected abstract void writeBeginDocument() throws IOException;
+
+    protected abstract void writeEndDocument() throws IOException;
+
+    protected abstract void writeBeginMapping(@NotNull String key) throws IOException;
+
+    protected abstract void writeEndMapping() throws IOException;
+
+    protected abstract void writeScalar(@NotNull String key, @Nullable Object value) throws IOException;
+
+    protected abstract void writeStringList(@NotNull String key, @NotNull List<?> value) throws IOException;
+
+    /**
+     * Implements AuxWriter for JSON
+     */
+    private static class JsonImpl extends AuxWriter {
+
+        private final JsonWriter jsonWriter;
+
+        private JsonImpl(@NotNull Writer writer) {
+            this.jsonWriter = new JsonWriter(writer);
+            this.jsonWriter.setIndent("  ");
+        }
+
+        @Override
+        protected void writeBeginDocument() throws IOException {
+            this.jsonWriter.beginObject();
+        }
+
+        @Override
+        protected void writeEndDocument() throws IOException {
+            this.jsonWriter.endObject();
+            this.jsonWriter.close();
+        }
+
+        @Override
+        protected void writeBeginMapping(@NotNull String key) throws IOException {
+            this.jsonWriter.name(key).beginObject();
+        }
+
+        @Override
+        protected void writeEndMapping() throws IOException {
+            this.jsonWriter.endObject();
+        }
+
+        @Override
+        protected void writeScalar(@NotNull String key, @Nullable Object value) throws IOException {
+            this.jsonWriter.name(key);
+            if (value == null)
+                this.jsonWriter.nullValue();
+            else if (value instanceof Number)
+                this.jsonWriter.value((Number) value);
+            else if (value instanceof Boolean)
+                this.jsonWriter.value((Boolean) value);
+            else
+                this.jsonWriter.value(value.toString());
+        }
+
+        @Override
+        protected void writeStringList(@NotNull String key, @NotNull List<?> value) throws IOException {
+            this.jsonWriter.name(key).beginArray();
+            for (Object element : value)
+                this.jsonWriter.value(String.valueOf(element));
+            this.jsonWriter.endArray();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.jsonWriter.flush();
+        }
+    }
+
+    /**
+     * Implements AuxWriter for YAML
+     */
+    private static class YamlImpl extends AuxWriter {
+
+        private static final Resolver RESOLVER = new Resolver();
+
+        private final Writer writer;
+        private final Emitter emitter;
+
+        private YamlImpl(@NotNull Writer writer) {
+            final DumperOptions options = new DumperOptions();
+            options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+            options.setIndent(2);
+
+            this.writer = writer;
+            this.emitter = new Emitter(writer, options);
+        }
+
+        @Override
+        protected void writeBeginDocument() throws IOException {
+            this.emitter.emit(new StreamStartEvent(null, null));
+            this.emitter.emit(new DocumentStartEvent(null, null, false, null, null));
+            this.emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+        }
+
+        @Override
+        protected void writeEndDocument() throws IOException {
+            this.emitter.emit(new MappingEndEvent(null, null));
+            this.emitter.emit(new DocumentEndEvent(null, null, false));
+            this.emitter.emit(new StreamEndEvent(null, null));
+            this.writer.close();
+        }
+
+        @Override
+        protected void writeBeginMapping(@NotNull String key) throws IOException {
+            emitScalar(key);
+            this.emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+        }
+
+        @Override
+        protected void writeEndMapping() throws IOException {
+            this.emitter.emit(new MappingEndEvent(null, null));
+        }
+
+        @Override
+        protected void writeScalar(@NotNull String key, @Nullable Object value) throws IOException {
+            emitScalar(key);
+            if (value == null)
+                emitScalar(Tag.NULL, "null");
+            else if (value instanceof Number || value instanceof Boolean)
+                emitScalar(RESOLVER.resolve(NodeId.scalar, value.toString(), true), value.toString());
+            else
+                emitScalar(value.toString());
+        }
+
+        @Override
+        protected void writeStringList(@NotNull String key, @NotNull List<?> value) throws IOException {
+            emitScalar(key);
+            this.emitter.emit(new SequenceStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+            for (Object element : value)
+                emitScalar(String.valueOf(element));
+            this.emitter.emit(new SequenceEndEvent(null, null));
+        }
+
+        private void emitScalar(@NotNull String value) throws IOException {
+            emitScalar(Tag.STR, value);
+        }
+
+        private void emitScalar(@NotNull Tag tag, @NotNull String value) throws IOException {
+            // quote value only when plain value would not resolve to the same tag
+            final var implicit = new ImplicitTuple(
+                    tag.equals(RESOLVER.resolve(NodeId.scalar, value, true)),
+                    tag.equals(RESOLVER.resolve(NodeId.scalar, value, false))
+            );
+            this.emitter.emit(new ScalarEvent(null, tag.getValue(), implicit, value, null, null, DumperOptions.ScalarStyle.PLAIN));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.writer.flush();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package xyz.rgnt.revoken.common.providers.storage.data.codec;
 import lombok.extern.log4j.Log4j2;
 import org.jetbrains.annotations.NotNull;
 import xyz.rgnt.revoken.common.providers.storage.data.AuxData;
+import xyz.rgnt.revoken.common.providers.storage.data.AuxWriter;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.ex.ClassCodecException;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.impl.CommonClassMapper;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.impl.CommonTransformer;
@@ -13,6 +14,7 @@ import xyz.rgnt.revoken.common.providers.storage.data.codec.meta.CodecValue;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -73,6 +75,83 @@ public class AuxCodec {
         }
     }
 
+    /***
+     * Encodes object directly into streaming writer, nested codecs included.
+     * @param toEncode Object to encode
+     * @param writer   Writer to which encoded class will be written.
+     */
+    public static void encodeClass(@NotNull ICodec toEncode, @NotNull AuxWriter writer) throws ClassCodecException {
+        final var transformer = toEncode.defaultTransformer();
+        if(transformer == null)
+            throw new ClassCodecException("Transformer is not present", toEncode);
+        final var mapper = toEncode.defaultClassMapper();
+        if(mapper == null)
+            throw new ClassCodecException("ClassMapper is not present", toEncode);
+
+        // writer closes sector when path leaves it, so fields sharing a parent must be written contiguously
+        for (final Field field :
+                groupByPath(mapper.getClassCodecFields(toEncode.type(), toEncode)
+                        .filter(field -> !Modifier.isTransient(field.getModifiers()))
+                        .filter(field -> field.isAnnotationPresent(CodecKey.class)).collect(Collectors.toList()))) {
+            field.setAccessible(true);
+
+            CodecKey cKey = field.getDeclaredAnnotation(CodecKey.class);
+            if (cKey == null)
+                continue;
+
+            try {
+                CodecValue cVal = CodecValue.builder()
+                        .type(field.getType())
+                        .value(field.get(toEncode))
+                        .build();
+                CodecField cField = CodecField.builder()
+                        .fieldName(field.getName())
+                        .codecKey(cKey)
+                        .codecValue(cVal)
+                        .build();
+
+                transformer.encode(cField, writer);
+            } catch (Exception e) {
+                throw new ClassCodecException(toEncode, e);
+            }
+        }
+
+        // user defined encode
+        try {
+            toEncode.onEncode(writer);
+        } catch (Exception x) {
+            throw new ClassCodecException(toEncode, x);
+        }
+    }
+
+    /**
+     * Orders fields so that fields sharing a parent path follow each other. Parents keep order of their first field,
+     * so fields which are already grouped keep their declared order.
+     *
+     * @param fields Fields annotated with {@link CodecKey}
+     * @return Grouped fields
+     */
+    static @NotNull List<Field> groupByPath(@NotNull List<Field> fields) {
+        final Map<String, Integer> firstSeen = new HashMap<>();
+        final Map<Field, int[]> orders = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            final String[] members = fields.get(i).getDeclaredAnnotation(CodecKey.class).value().split("\\.");
+            final int[] order = new int[members.length];
+            final StringBuilder prefix = new StringBuilder();
+            for (int depth = 0; depth < members.length; depth++) {
+                if (depth > 0)
+                    prefix.append('.');
+                prefix.append(members[depth]);
+                order[depth] = firstSeen.computeIfAbsent(prefix.toString(), key -> firstSeen.size());
+            }
+            orders.put(fields.get(i), order);
+        }
+
+        final List<Field> grouped = new ArrayList<>(fields);
+        grouped.sort((a, b) -> Arrays.compare(orders.get(a), orders.get(b)));
+        return grouped;
+    }
+
     /***
      * Decodes object
      * @param toDecode Object to decode. (This will modify the object codec members)
@@ -136,6 +215,10 @@ public class AuxCodec {
         public abstract void encode(@NotNull CodecField codecField, @NotNull AuxData data) throws CodecException;
 
         public abstract void decode(@NotNull CodecField codecField, @NotNull AuxData data) throws CodecException;
+
+        public void encode(@NotNull CodecField codecField, @NotNull AuxWriter writer) throws CodecException {
+            throw new CodecException("Transformer does not support streaming encode", codecField);
+        }
     }
 
 }
@@ -3,6 +3,7 @@ package xyz.rgnt.revoken.common.providers.storage.data.codec;
 
 import org.jetbrains.annotations.NotNull;
 import xyz.rgnt.revoken.common.providers.storage.data.AuxData;
+import xyz.rgnt.revoken.common.providers.storage.data.AuxWriter;
 
 /**
  * Represents class which is able to be encoded/decoded by {@link AuxCodec}
@@ -39,4 +40,5 @@ public interface ICodec {
 
     default void onDecode(@NotNull AuxData source) throws Exception {}
     default void onEncode(@NotNull AuxData source) throws Exception {}
+    default void onEncode(@NotNull AuxWriter target) throws Exception {}
 }
@@ -6,6 +6,7 @@ import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
 import org.bukkit.configuration.ConfigurationSection;
 import org.jetbrains.annotations.NotNull;
 import xyz.rgnt.revoken.common.providers.storage.data.AuxData;
+import xyz.rgnt.revoken.common.providers.storage.data.AuxWriter;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.AuxCodec;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.ICodec;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.impl.ex.CodecException;
@@ -13,6 +14,7 @@ import xyz.rgnt.revoken.common.providers.storage.data.codec.meta.CodecField;
 import xyz.rgnt.revoken.common.util.ThrowingBiFunction;
 import xyz.rgnt.revoken.common.util.ThrowingFunction;
 
+import java.io.StringWriter;
 import java.util.*;
 
 public class CommonTransformer extends AuxCodec.Transformer {
@@ -174,6 +176,52 @@ public class CommonTransformer extends AuxCodec.Transformer {
         }
     }
 
+    @Override
+    public void encode(@NotNull CodecField codecField, @NotNull AuxWriter writer) throws CodecException {
+        final String key = codecField.getCodecKey().value();
+        final Class<?> type = codecField.getCodecValue().getType();
+        final Object value = codecField.getCodecValue().getValue();
+
+        // nothing to write, decode will use default value of field
+        if (value == null)
+            return;
+
+        try {
+            if (ICodec.class.isAssignableFrom(type)) {
+                final var target = (ICodec) value;
+                final var dataType = target.dataAdapterType();
+
+                if (dataType.isParsable()) {
+                    // parsable codec is stored as single string scalar, whose quoting and escaping depend on its whole
+                    // content, so it can not be streamed into this writer. Only this codec is buffered, memory is bounded
+                    // by its encoded size, not by size of the document. None of the plugin's codecs is parsable.
+                    final var buffer = new StringWriter();
+                    try (final var nestedWriter = AuxWriter.of(dataType, buffer)) {
+                        nestedWriter.encode(target);
+                    }
+                    writer.set(key, buffer.toString());
+                } else {
+                    writer.beginSector(key);
+                    writer.encode(target);
+                    writer.endSector();
+                }
+            } else if (List.class.isAssignableFrom(type)) {
+                writer.setStringList(key, (List<?>) value);
+            } else if (value instanceof Number || value instanceof Boolean) {
+                writer.set(key, value);
+            } else {
+                final var transformer = this.encodeTransformers.get(type);
+                if (transformer == null)
+                    throw new CodecException("Couldn't find suitable encode transformer for type class " + type.getName(), codecField);
+                writer.set(key, transformer.apply(value));
+            }
+        } catch (CodecException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CodecException("Failed to encode field", e, codecField);
+        }
+    }
+
     @Override
     public void decode(@NotNull CodecField codecField, @NotNull AuxData data) throws CodecException {
         final String key = codecField.getCodecKey().value();
@@ -218,6 +266,9 @@ public class CommonTransformer extends AuxCodec.Transformer {
         if (source == null) {
             if(origin == null)
                 throw new CodecException("Missing codec key in data", codecField);
+            // default codec is already decoded, it can not be transformed from itself
+            if (type.equals(ICodec.class))
+                return;
             else // use default value of field
                 source = origin;
         }
@@ -54,7 +54,7 @@ public class BukkitPlugin extends JavaPlugin implements Revoken<BukkitPlugin> {
 
         this.powerBlocksMngr.initialize();
         if (PlaceholderStatics.hasPlaceholderAPISupport())
-            new PlaceholderExt().register();
+            new PlaceholderExt(this.powerBlocksMngr).register();
 
         Bukkit.getServer().getCommandMap().register("warfaremc", new Command("powerblocks") {
             {
@@ -63,22 +63,35 @@ public class BukkitPlugin extends JavaPlugin implements Revoken<BukkitPlugin> {
 
             @Override
             public boolean execute(@NotNull CommandSender sender, @NotNull String s, @NotNull String[] args) {
+                // particle visibility is preference of every player
+                if (args.length == 1 && args[0].equalsIgnoreCase("particles") && sender instanceof Player) {
+                    final var visible = powerBlocksMngr.getEffectsScheduler().getParticlePreferences()
+                            .toggle(((Player) sender).getUniqueId());
+                    sender.sendMessage(visible ? "§aPower block particles shown." : "§cPower block particles hidden.");
+                    return true;
+                }
                 if (!sender.hasPermission("warfarepowerblocks.admin"))
                     return true;
                 if(args.length == 0) {
-                    sender.sendMessage("§cUsage: /pwrb <reload, save, info, add>");
+                    sender.sendMessage("§cUsage: /pwrb <reload, save, info, add, queue, stats, particles>");
                     return true;
                 }
 
                 if(args[0].equalsIgnoreCase("reload")) {
-                    powerBlocksMngr.getConfiguration().loadConfiguration();
+                    powerBlocksMngr.reload();
                     sender.sendMessage("§aReloaded!");
                 } else if(args[0].equalsIgnoreCase("save")) {
                     sender.sendMessage("§aSaving...");
-                    Bukkit.getScheduler().runTaskAsynchronously(BukkitPlugin.this, () -> {
-                        BukkitPlugin.this.powerBlocksMngr.save();
-                        sender.sendMessage("§aSaved!");
-                    });
+                    powerBlocksMngr.saveAsync(() -> sender.sendMessage("§aSaved!"));
+                } else if(args[0].equalsIgnoreCase("queue")) {
+                    final var dispatcher = powerBlocksMngr.getRewardDispatcher();
+                    sender.sendMessage("§aQueued reward commands: " + dispatcher.getQueuedCount() + ", Waiting for players: " + dispatcher.getParkedCount());
+                    final var rewardQueue = powerBlocksMngr.getRewardQueue();
+                    if (rewardQueue != null)
+                        sender.sendMessage("§aRewards of offline players: " + rewardQueue.getSize() + " (" + rewardQueue.getPlayerCount() + " players)");
+                } else if(args[0].equalsIgnoreCase("stats")) {
+                    sender.sendMessage("§aPower blocks metrics:");
+                    powerBlocksMngr.getMetrics().report().forEach(line -> sender.sendMessage("§7" + line));
                 } else if(args[0].equalsIgnoreCase("info")) {
                     if(sender instanceof Player) {
                         final Block block = ((Player) sender).getTargetBlock(10);
@@ -131,9 +144,9 @@ public class BukkitPlugin extends JavaPlugin implements Revoken<BukkitPlugin> {
             @Override
             public @NotNull List<String> tabComplete(@NotNull CommandSender sender, @NotNull String alias, @NotNull String[] args) throws IllegalArgumentException {
                 if (!sender.hasPermission("warfarepowerblocks.admin"))
-                    return Collections.emptyList();
+                    return args.length == 1 ? Collections.singletonList("particles") : Collections.emptyList();
                 if(args.length == 1)
-                    return Arrays.asList("reload", "save", "info", "add");
+                    return Arrays.asList("reload", "save", "info", "add", "queue", "stats", "particles");
                 return Collections.emptyList();
             }
         });
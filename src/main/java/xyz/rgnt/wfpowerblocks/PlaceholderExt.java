@@ -3,9 +3,19 @@ package xyz.rgnt.wfpowerblocks;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
+import xyz.rgnt.wfpowerblocks.metrics.LatencyHistogram;
+import xyz.rgnt.wfpowerblocks.placeholders.PlaceholderEngine;
 
 public class PlaceholderExt extends PlaceholderExpansion {
 
+    private final PlaceholderEngine engine;
+    private final LatencyHistogram requestLatency;
+
+    public PlaceholderExt(@NotNull PowerBlocksMngr powerBlocksMngr) {
+        this.engine = new PlaceholderEngine(powerBlocksMngr::getPowerBlock, powerBlocksMngr.getNameCache()::getNameOrPrefetch);
+        this.requestLatency = powerBlocksMngr.getMetrics().histogram("placeholder.request");
+    }
+
     @Override
     public @NotNull String getIdentifier() {
         return "wfp";
@@ -23,22 +33,11 @@ public class PlaceholderExt extends PlaceholderExpansion {
 
     @Override
     public String onPlaceholderRequest(Player player, @NotNull String params) {
+        final long start = System.nanoTime();
         try {
-            var id = params.split("_")[0];
-            var tp = params.split("_")[1];
-            var powerBlock = BukkitPlugin.getPlugin(BukkitPlugin.class).getPowerBlocksMngr()
-                    .getPowerBlock(id);
-            if (powerBlock == null)
-                return "NaN";
-
-            return switch (tp) {
-                case "maxHealth" -> powerBlock.getMaximalHealthPoints() + "";
-                case "currentHealth" -> powerBlock.getCurrentHealthPoints() + "";
-                default -> "NaN";
-            };
-        }
-        catch (final Exception exception) {
-            return "NaN";
+            return this.engine.resolve(player, params);
+        } finally {
+            this.requestLatency.recordSince(start);
         }
     }
 }
\ No newline at end of file
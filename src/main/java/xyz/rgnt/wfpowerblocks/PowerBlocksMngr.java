@@ -1,31 +1,68 @@
 package xyz.rgnt.wfpowerblocks;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import com.google.gson.JsonObject;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.TextReplacementConfig;
-import net.kyori.adventure.text.minimessage.MiniMessage;
-import org.apache.logging.log4j.util.Strings;
 import org.bukkit.*;
 import org.bukkit.block.Block;
-import org.bukkit.entity.Player;
+import org.bukkit.entity.*;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.entity.ProjectileHitEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import xyz.rgnt.revoken.common.providers.storage.data.AuxWriter;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.ICodec;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.meta.CodecKey;
 import xyz.rgnt.revoken.common.providers.storage.flatfile.store.AStore;
 import xyz.rgnt.wfpowerblocks.block.PowerBlock;
+import xyz.rgnt.wfpowerblocks.block.PowerBlockIndex;
+import xyz.rgnt.wfpowerblocks.damage.DamageAggregator;
+import xyz.rgnt.wfpowerblocks.effects.EffectsScheduler;
+import xyz.rgnt.wfpowerblocks.jfr.ConfigReloadEvent;
+import xyz.rgnt.wfpowerblocks.jfr.DataSaveEvent;
+import xyz.rgnt.wfpowerblocks.jfr.PowerBlockDefeatEvent;
+import xyz.rgnt.wfpowerblocks.jfr.PowerBlockSaveEvent;
+import xyz.rgnt.wfpowerblocks.messages.MessageTemplate;
+import xyz.rgnt.wfpowerblocks.metrics.LatencyHistogram;
+import xyz.rgnt.wfpowerblocks.metrics.MetricsRegistry;
+import xyz.rgnt.wfpowerblocks.metrics.PrometheusExporter;
+import xyz.rgnt.wfpowerblocks.names.NameCache;
+import xyz.rgnt.wfpowerblocks.providers.data.codecs.EffectsCodec;
 import xyz.rgnt.wfpowerblocks.providers.data.codecs.ParticleCodec;
 import xyz.rgnt.wfpowerblocks.providers.data.codecs.SoundCodec;
-
+import xyz.rgnt.wfpowerblocks.replication.LoopbackTransport;
+import xyz.rgnt.wfpowerblocks.replication.ReplicationTransport;
+import xyz.rgnt.wfpowerblocks.replication.Replicator;
+import xyz.rgnt.wfpowerblocks.rewards.RewardCommand;
+import xyz.rgnt.wfpowerblocks.rewards.RewardDispatcher;
+import xyz.rgnt.wfpowerblocks.rewards.RewardPrefetcher;
+import xyz.rgnt.wfpowerblocks.rewards.RewardQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages power blocks
@@ -33,10 +70,35 @@ import java.util.*;
 @Log4j2(topic = "WarfarePowerBlocks - Mngr")
 public class PowerBlocksMngr implements Listener {
 
+    /**
+     * Count of attackers listed in defeat message
+     */
+    private static final int DEFEAT_MESSAGE_ATTACKERS = 3;
+    /**
+     * Delay between join and dispatch of queued rewards
+     */
+    private static final long JOIN_REWARD_DELAY_TICKS = 20;
+    private static final List<String> DEFEAT_MESSAGE_SLOTS = new ArrayList<>(List.of("pwb-name", "pwb-max-health"));
+
+    static {
+        for (int i = 1; i <= DEFEAT_MESSAGE_ATTACKERS; i++)
+            DEFEAT_MESSAGE_SLOTS.addAll(List.of(i + "-attacker", i + "-attacker-damage", i + "-attacker-damage-%"));
+    }
+
     private final BukkitPlugin pluginInstance;
 
-    private final Table<UUID, Long, PowerBlock> powerBlocks           = HashBasedTable.create();
-    private final Map<UUID, Map.Entry<String, Integer>> queuedRewards = new HashMap<>();
+    private final PowerBlockIndex powerBlocks                         = new PowerBlockIndex();
+    @Getter
+    private RewardQueue rewardQueue;
+    private final RewardPrefetcher rewardPrefetcher = new RewardPrefetcher();
+    /**
+     * Dormant power blocks by world and chunk key, activated when their chunk is loaded. Main thread only.
+     */
+    private final Map<UUID, Map<Long, List<PowerBlock>>> dormantBlocks = new HashMap<>();
+    /**
+     * Ids of configured power blocks by name of their world, which is not loaded. Main thread only.
+     */
+    private final Map<String, Set<String>> pendingWorlds = new HashMap<>();
 
     @Getter
     private @NotNull Optional<AStore> configurationStore = Optional.empty();
@@ -45,6 +107,23 @@ public class PowerBlocksMngr implements Listener {
 
     @Getter
     private final EventListener eventHandler = new EventListener();
+    @Getter
+    private final MetricsRegistry metrics;
+    private final LatencyHistogram destroyBlockLatency;
+    private final LatencyHistogram defeatLatency;
+    private final LatencyHistogram saveLatency;
+    private final LatencyHistogram loadLatency;
+    private final PrometheusExporter prometheusExporter;
+    @Getter
+    private final EffectsScheduler effectsScheduler;
+    @Getter
+    private final RewardDispatcher rewardDispatcher;
+    @Getter
+    private final NameCache nameCache;
+    @Getter
+    private final DamageAggregator damageAggregator;
+    @Getter
+    private final Replicator replicator;
 
     /**
      * Default constructor
@@ -53,6 +132,27 @@ public class PowerBlocksMngr implements Listener {
      */
     public PowerBlocksMngr(@NotNull BukkitPlugin owningPlugin) {
         this.pluginInstance = owningPlugin;
+        this.metrics = new MetricsRegistry(owningPlugin, this.configuration);
+        this.destroyBlockLatency = this.metrics.histogram("block.destroy");
+        this.defeatLatency = this.metrics.histogram("block.defeat");
+        this.saveLatency = this.metrics.histogram("data.save");
+        this.loadLatency = this.metrics.histogram("data.load");
+        this.effectsScheduler = new EffectsScheduler(owningPlugin, this.configuration);
+        this.rewardDispatcher = new RewardDispatcher(owningPlugin, this.configuration,
+                new File(owningPlugin.getDataFolder(), "data/reward_dispatch.bin"),
+                new File(owningPlugin.getDataFolder(), "data/reward_dispatch.json"));
+        this.nameCache = new NameCache(owningPlugin);
+        this.damageAggregator = new DamageAggregator(owningPlugin, this.configuration, this.metrics, this.eventHandler);
+
+        this.prometheusExporter = new PrometheusExporter(owningPlugin, this);
+        this.replicator = new Replicator(owningPlugin, this.configuration, this.powerBlocks::get, this.eventHandler);
+        this.metrics.gauge("blocks.registered", this.powerBlocks::size);
+        this.metrics.gauge("rewards.dispatch.queued", this.rewardDispatcher::getQueuedCount);
+        this.metrics.gauge("rewards.dispatch.parked", this.rewardDispatcher::getParkedCount);
+        this.metrics.gauge("rewards.offline.queued", () -> {
+            final var rewardQueue = this.rewardQueue;
+            return rewardQueue != null ? rewardQueue.getSize() : 0;
+        });
     }
 
     /**
@@ -64,111 +164,354 @@ public class PowerBlocksMngr implements Listener {
         final long saveInterval = this.configuration.dataSaveInterval * 60 * 20;
         Bukkit.getScheduler().scheduleSyncRepeatingTask(pluginInstance, this::save, saveInterval, saveInterval);
         Bukkit.getPluginManager().registerEvents(this.eventHandler, pluginInstance);
+        this.effectsScheduler.start();
+        this.rewardDispatcher.start();
+        this.damageAggregator.start();
+        this.metrics.start();
+        this.prometheusExporter.start();
+        if (this.configuration.isReplicationEnabled())
+            startReplication();
+    }
+
+    private void startReplication() {
+        // transport registered by other plugin takes precedence over configured one
+        ReplicationTransport transport = Bukkit.getServicesManager().load(ReplicationTransport.class);
+        if (transport == null && this.configuration.getReplicationTransport().equalsIgnoreCase("loopback"))
+            transport = new LoopbackTransport();
+        if (transport == null) {
+            log.error("Replication transport '{}' is not available, power blocks are not replicated.", this.configuration.getReplicationTransport());
+            return;
+        }
+        this.replicator.start(transport);
     }
 
     /**
      * Terminates manager
      */
     public void terminate() {
+        this.prometheusExporter.stop();
+        this.damageAggregator.stop();
+        this.replicator.stop();
+        this.metrics.stop();
+        this.effectsScheduler.stop();
+        this.rewardDispatcher.stop();
         this.save();
+        try {
+            if (this.rewardQueue != null)
+                this.rewardQueue.close();
+        } catch (IOException e) {
+            log.error("Couldn't close queue rewards file", e);
+        }
     }
 
 
     public void load() {
+        final long start = System.nanoTime();
         log.info("Loading data...");
         this.configuration.loadConfiguration();
 
         try {
-            AStore queuedRewardsStore = pluginInstance.getStorageProvider().provideJson("", "data/reward_queue.json", false);
-            final JsonObject data = (JsonObject)queuedRewardsStore.getUnderlyingDataSource();
-            if(data!=null) {
-                data.entrySet().forEach((entry) -> {
-                    final UUID player = UUID.fromString(entry.getKey());
-                    final JsonObject playerDataJson = entry.getValue().getAsJsonObject();
-
-                    this.queuedRewards.put(player, Map.entry(playerDataJson.get("pwb_id").getAsString(), playerDataJson.get("position").getAsInt()));
-                });
-                log.info("Queued {} rewards.", this.queuedRewards.size());
+            if (this.rewardQueue == null) {
+                this.rewardQueue = new RewardQueue(new File(pluginInstance.getDataFolder(), "data/reward_queue.bin"));
+                this.rewardQueue.open();
+                migrateRewardQueue();
+                log.info("Queued {} rewards of {} players.", this.rewardQueue.getSize(), this.rewardQueue.getPlayerCount());
             }
-
         } catch (Exception e) {
-            log.error("Couldn't create queue rewards file", e);
+            log.error("Couldn't open queue rewards file", e);
         }
 
-        {
-            getConfiguration().getPowerBlockCodecs().forEach((powerBlockId, codec) -> {
-                PowerBlock powerBlock = null;
-                final AStore blockMemoryStore;
-                try {
-                    blockMemoryStore = pluginInstance.getStorageProvider()
-                            .provideJson("", "data/powerblocks/" + powerBlockId + ".json", false);
-                    // load memory if possible
-                    if (blockMemoryStore.getFile().exists())
-                        powerBlock = codec.constructPowerBlock(powerBlockId, PowerBlock.decodeBlockMemory((JsonObject) blockMemoryStore.getUnderlyingDataSource()));
-                } catch (Exception x) {
-                    log.error("Failed to decode memory file of power block '{}'.", powerBlockId, x);
-                } finally {
-                    // use null memory
-                    if (powerBlock == null)
-                        powerBlock = codec.constructPowerBlock(powerBlockId, null);
-                }
+        this.rewardDispatcher.load();
+        if (this.rewardDispatcher.getQueuedCount() > 0)
+            log.info("Restored {} pending reward commands.", this.rewardDispatcher.getQueuedCount());
 
-                if(powerBlock == null) {
-                    log.error("Invalid power block with id '{}'", powerBlockId);
-                    return;
-                }
+        try {
+            // replication file of older versions, counters stored in memory files of power blocks replace it
+            AStore replicationStore = pluginInstance.getStorageProvider().provideJson("", "data/replication.json", false);
+            if (replicationStore.getFile().exists())
+                this.replicator.decode((JsonObject) replicationStore.getUnderlyingDataSource());
+        } catch (Exception e) {
+            log.error("Couldn't load replication state", e);
+        }
 
-                registerPowerBlock(powerBlock);
-            });
+        try {
+            AStore namesStore = pluginInstance.getStorageProvider().provideJson("", "data/name_cache.json", false);
+            this.nameCache.decode((JsonObject) namesStore.getUnderlyingDataSource());
+        } catch (Exception e) {
+            log.error("Couldn't load name cache", e);
         }
 
+        try {
+            AStore preferencesStore = pluginInstance.getStorageProvider().provideJson("", "data/particle_preferences.json", false);
+            this.effectsScheduler.getParticlePreferences().decode((JsonObject) preferencesStore.getUnderlyingDataSource());
+        } catch (Exception e) {
+            log.error("Couldn't load particle preferences", e);
+        }
+
+        this.pendingWorlds.clear();
+        getConfiguration().getPowerBlockCodecs().forEach((powerBlockId, codec) -> {
+            // power blocks of worlds which are not loaded yet are registered by world load event
+            if (Bukkit.getWorld(codec.getWorldName()) == null) {
+                deferToWorldLoad(powerBlockId, codec);
+                return;
+            }
+            loadPowerBlock(powerBlockId, codec);
+        });
+
+        this.loadLatency.recordSince(start);
         log.info("Data loaded!");
     }
 
-    public void save() {
-        log.info("Saving data...");
-        this.powerBlocks.values().forEach(powerBlock -> {
-            try {
-                AStore store = pluginInstance.getStorageProvider()
-                        .provideJson("", "data/powerblocks/" + powerBlock.getId() + ".json", false);
+    /**
+     * Constructs power block with its stored memory and registers it
+     *
+     * @param powerBlockId Id of power block
+     * @param codec        Codec of power block
+     */
+    private void loadPowerBlock(@NotNull String powerBlockId, @NotNull PowerBlock.Codec codec) {
+        PowerBlock powerBlock = null;
+        final AStore blockMemoryStore;
+        try {
+            blockMemoryStore = pluginInstance.getStorageProvider()
+                    .provideJson("", "data/powerblocks/" + powerBlockId + ".json", false);
+            // load memory if possible
+            if (blockMemoryStore.getFile().exists()) {
+                final JsonObject data = (JsonObject) blockMemoryStore.getUnderlyingDataSource();
+                powerBlock = codec.constructPowerBlock(powerBlockId, PowerBlock.decodeBlockMemory(data));
+                // replication counters were saved together with memory, files of older versions keep replication file counters
+                if (data.has("replication"))
+                    this.replicator.decode(powerBlockId, data.getAsJsonObject("replication"));
+            }
+        } catch (Exception x) {
+            log.error("Failed to decode memory file of power block '{}'.", powerBlockId, x);
+        } finally {
+            // use null memory
+            if (powerBlock == null)
+                powerBlock = codec.constructPowerBlock(powerBlockId, null);
+        }
+
+        if(powerBlock == null) {
+            log.error("Invalid power block with id '{}'", powerBlockId);
+            return;
+        }
+
+        registerPowerBlock(powerBlock);
+    }
+
+    private void deferToWorldLoad(@NotNull String powerBlockId, @NotNull PowerBlock.Codec codec) {
+        this.pendingWorlds.computeIfAbsent(codec.getWorldName(), key -> new LinkedHashSet<>()).add(powerBlockId);
+        log.info("Power block '{}' waits for world '{}' to load.", powerBlockId, codec.getWorldName());
+    }
+
+    /**
+     * Registers power blocks of loaded world
+     *
+     * @param world Loaded world
+     */
+    private void loadWorld(@NotNull World world) {
+        final Set<String> powerBlockIds = this.pendingWorlds.remove(world.getName());
+        if (powerBlockIds == null)
+            return;
+        for (String powerBlockId : powerBlockIds) {
+            // power block may have been removed from configuration since
+            final PowerBlock.Codec codec = this.configuration.getPowerBlockCodecs().get(powerBlockId);
+            if (codec != null && world.getName().equals(codec.getWorldName()))
+                loadPowerBlock(powerBlockId, codec);
+        }
+        log.info("Loaded {} power blocks of world '{}'.", powerBlockIds.size(), world.getName());
+    }
+
+    /**
+     * Saves and releases power blocks of unloaded world, they are registered again when world loads
+     *
+     * @param world Unloaded world
+     */
+    private void unloadWorld(@NotNull World world) {
+        // damage of this tick belongs to memory which is about to be saved
+        this.damageAggregator.flush();
+
+        // index releases its cached reference to world even if world has no power blocks
+        final List<PowerBlock> released = this.powerBlocks.removeWorld(world.getUID());
+        this.dormantBlocks.remove(world.getUID());
+        if (released.isEmpty())
+            return;
+        for (PowerBlock powerBlock : released) {
+            savePowerBlock(powerBlock, encodePowerBlock(powerBlock), null);
+            this.effectsScheduler.forget(powerBlock);
+            this.pendingWorlds.computeIfAbsent(world.getName(), key -> new LinkedHashSet<>()).add(powerBlock.getId());
+        }
+        log.info("Released {} power blocks of unloaded world '{}'.", released.size(), world.getName());
+    }
+
+    /**
+     * Reloads configuration and re-registers configured power blocks. Memory of already registered power blocks is kept.
+     */
+    public void reload() {
+        final ConfigReloadEvent event = new ConfigReloadEvent();
+        event.begin();
+        log.info("Reloading configuration...");
+        this.configuration.loadConfiguration();
+        // damage of this tick belongs to memory which may be saved below
+        this.damageAggregator.flush();
 
-                store.setUnderlyingDataSource(PowerBlock.encodeBlockMemory(powerBlock.getBlockMemory()));
-                store.save();
-            } catch (Exception e) {
-                log.error("Couldn't create memory file for power block '{}'", powerBlock.getId(), e);
+        // power blocks removed from configuration stop taking damage, their memory is kept in its file
+        for (String powerBlockId : new ArrayList<>(this.powerBlocks.ids())) {
+            if (!getConfiguration().getPowerBlockCodecs().containsKey(powerBlockId))
+                unregisterPowerBlock(this.powerBlocks.get(powerBlockId));
+        }
+
+        this.pendingWorlds.clear();
+        getConfiguration().getPowerBlockCodecs().forEach((powerBlockId, codec) -> {
+            final PowerBlock current = this.powerBlocks.get(powerBlockId);
+            if (Bukkit.getWorld(codec.getWorldName()) == null) {
+                // memory of power block moved to unloaded world is kept in its file
+                if (current != null)
+                    unregisterPowerBlock(current);
+                deferToWorldLoad(powerBlockId, codec);
+                return;
             }
+            final PowerBlock powerBlock = codec.constructPowerBlock(powerBlockId, current != null ? current.getBlockMemory() : null);
+            if (powerBlock == null) {
+                log.error("Invalid power block with id '{}'", powerBlockId);
+                return;
+            }
+            registerPowerBlock(powerBlock);
+        });
+        event.blockCount = this.powerBlocks.size();
+        event.commit();
+        log.info("Configuration reloaded!");
+    }
+
+    /**
+     * Saves all data, must be called on main thread
+     */
+    public void save() {
+        save(encodePowerBlocks());
+    }
+
+    /**
+     * Saves all data asynchronously. Memory and replication counters of power blocks are touched on main thread only,
+     * so they are encoded before saving thread starts and only writing runs on it.
+     *
+     * @param callback Called on saving thread after data is saved
+     */
+    public void saveAsync(@NotNull Runnable callback) {
+        final List<Map.Entry<PowerBlock, JsonObject>> powerBlocks = encodePowerBlocks();
+        Bukkit.getScheduler().runTaskAsynchronously(pluginInstance, () -> {
+            save(powerBlocks);
+            callback.run();
         });
+    }
+
+    /**
+     * Must be called on main thread
+     *
+     * @return Registered power blocks with their encoded data
+     */
+    private @NotNull List<Map.Entry<PowerBlock, JsonObject>> encodePowerBlocks() {
+        final List<PowerBlock> registered = this.powerBlocks.values();
+        final List<Map.Entry<PowerBlock, JsonObject>> encoded = new ArrayList<>(registered.size());
+        for (PowerBlock powerBlock : registered)
+            encoded.add(Map.entry(powerBlock, encodePowerBlock(powerBlock)));
+        return encoded;
+    }
+
+    /**
+     * Encodes memory of power block together with its replication counters, so stored memory and counters always match.
+     * Must be called on main thread.
+     *
+     * @param powerBlock Power block
+     * @return Encoded data of power block
+     */
+    private @NotNull JsonObject encodePowerBlock(@NotNull PowerBlock powerBlock) {
+        final JsonObject data = PowerBlock.encodeBlockMemory(powerBlock.getBlockMemory());
+        data.add("replication", this.replicator.encode(powerBlock.getId()));
+        return data;
+    }
+
+    private void save(@NotNull List<Map.Entry<PowerBlock, JsonObject>> powerBlocks) {
+        final long start = System.nanoTime();
+        final DataSaveEvent saveEvent = new DataSaveEvent();
+        saveEvent.begin();
+        log.info("Saving data...");
+        for (Map.Entry<PowerBlock, JsonObject> entry : powerBlocks)
+            savePowerBlock(entry.getKey(), entry.getValue(), saveEvent);
 
         try {
-            AStore queuedRewardsStore = pluginInstance.getStorageProvider()
-                    .provideJson("", "data/reward_queue.json", false);
-            final var data = new JsonObject();
-            this.queuedRewards.forEach((playerUuid, playerData) -> {
-                final JsonObject playerDataJson = new JsonObject();
-                playerDataJson.addProperty("pwb_id", playerData.getKey());
-                playerDataJson.addProperty("position", playerData.getValue());
-                data.add(playerUuid.toString(), playerDataJson);
-            });
-            queuedRewardsStore.setUnderlyingDataSource(data);
-            queuedRewardsStore.save();
+            AStore namesStore = pluginInstance.getStorageProvider()
+                    .provideJson("", "data/name_cache.json", false);
+            namesStore.setUnderlyingDataSource(this.nameCache.encode());
+            namesStore.save();
+        } catch (Exception e) {
+            log.error("Couldn't create name cache file", e);
+        }
 
+        try {
+            AStore preferencesStore = pluginInstance.getStorageProvider()
+                    .provideJson("", "data/particle_preferences.json", false);
+            preferencesStore.setUnderlyingDataSource(this.effectsScheduler.getParticlePreferences().encode());
+            preferencesStore.save();
         } catch (Exception e) {
-            log.error("Couldn't create queue rewards file", e);
+            log.error("Couldn't create particle preferences file", e);
+        }
+        this.saveLatency.recordSince(start);
+        if (saveEvent.shouldCommit()) {
+            saveEvent.blockCount = powerBlocks.size();
+            saveEvent.commit();
         }
         log.info("Data saved!");
     }
 
 
+    /**
+     * Writes memory file of power block
+     *
+     * @param powerBlock Power block
+     * @param data       Data encoded by {@link #encodePowerBlock(PowerBlock)}
+     * @param saveEvent  Event of whole save or null
+     */
+    private void savePowerBlock(@NotNull PowerBlock powerBlock, @NotNull JsonObject data, @Nullable DataSaveEvent saveEvent) {
+        final PowerBlockSaveEvent blockEvent = new PowerBlockSaveEvent();
+        blockEvent.begin();
+        try {
+            AStore store = pluginInstance.getStorageProvider()
+                    .provideJson("", "data/powerblocks/" + powerBlock.getId() + ".json", false);
+
+            store.setUnderlyingDataSource(data);
+            store.save();
+
+            // size of file is read only while recording
+            if (blockEvent.shouldCommit() || (saveEvent != null && saveEvent.isEnabled())) {
+                final long bytesWritten = store.getFile().length();
+                if (saveEvent != null)
+                    saveEvent.bytesWritten += bytesWritten;
+                blockEvent.blockId = powerBlock.getId();
+                blockEvent.attackerCount = powerBlock.getBlockMemory().getAttackers().size();
+                blockEvent.bytesWritten = bytesWritten;
+                blockEvent.commit();
+            }
+        } catch (Exception e) {
+            log.error("Couldn't create memory file for power block '{}'", powerBlock.getId(), e);
+        }
+    }
+
+    /**
+     * Saves memory of power block and removes it from index
+     *
+     * @param powerBlock Registered power block
+     */
+    private void unregisterPowerBlock(@NotNull PowerBlock powerBlock) {
+        savePowerBlock(powerBlock, encodePowerBlock(powerBlock), null);
+        final Location loc = powerBlock.getBlockLocation();
+        this.powerBlocks.remove(loc.getWorld().getUID(), loc.toBlockKey());
+        this.effectsScheduler.forget(powerBlock);
+        log.info("§fPlugin unregistered §ePower block§7({})§f.", powerBlock.getId());
+    }
+
     private void registerPowerBlock(@NotNull PowerBlock powerBlock) {
         final Location loc = powerBlock.getBlockLocation();
-        final UUID worldUID = powerBlock.getBlockLocation().getWorld().getUID();
-        final Long locKey = loc.toBlockKey();
 
-        this.powerBlocks.put(
-                worldUID,
-                locKey,
-                powerBlock
-        );
+        this.powerBlocks.put(powerBlock);
         log.info("§fPlugin created §ePower block§7({})§f at {} {} {}({}).",
                 powerBlock.getId(),
                 loc.getBlockX(),
@@ -176,6 +519,55 @@ public class PowerBlocksMngr implements Listener {
                 loc.getBlockZ(),
                 loc.getWorld().getName()
         );
+        if (!powerBlock.isActive())
+            scheduleActivation(powerBlock);
+    }
+
+    /**
+     * Activates power block if its chunk is loaded, otherwise keeps it dormant until chunk is loaded
+     *
+     * @param powerBlock Dormant power block
+     */
+    private void scheduleActivation(@NotNull PowerBlock powerBlock) {
+        final Location loc = powerBlock.getBlockLocation();
+        final World world = loc.getWorld();
+        final int chunkX = loc.getBlockX() >> 4;
+        final int chunkZ = loc.getBlockZ() >> 4;
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            powerBlock.activate();
+            return;
+        }
+
+        final long chunkKey = PowerBlockIndex.chunkKey(chunkX, chunkZ);
+        this.dormantBlocks.computeIfAbsent(world.getUID(), key -> new HashMap<>())
+                .computeIfAbsent(chunkKey, key -> new ArrayList<>(1))
+                .add(powerBlock);
+        // chunk load event activates block as well, future covers chunk loaded before listener was registered
+        if (this.configuration.isPreloadChunks())
+            world.getChunkAtAsync(chunkX, chunkZ).thenAccept(chunk -> activateChunk(world, chunkKey));
+    }
+
+    /**
+     * Activates dormant power blocks of loaded chunk
+     *
+     * @param world    World
+     * @param chunkKey Chunk key
+     */
+    private void activateChunk(@NotNull World world, long chunkKey) {
+        final Map<Long, List<PowerBlock>> worldBlocks = this.dormantBlocks.get(world.getUID());
+        if (worldBlocks == null)
+            return;
+        final List<PowerBlock> blocks = worldBlocks.remove(chunkKey);
+        if (worldBlocks.isEmpty())
+            this.dormantBlocks.remove(world.getUID());
+        if (blocks == null)
+            return;
+
+        for (PowerBlock powerBlock : blocks) {
+            // power block may have been replaced by reload while dormant
+            if (this.powerBlocks.get(powerBlock.getId()) == powerBlock)
+                powerBlock.activate();
+        }
     }
 
     public @NotNull PowerBlock createPowerBlock(@NotNull String id, @NotNull Block block, @NotNull Integer healthPoints) {
@@ -190,7 +582,7 @@ public class PowerBlocksMngr implements Listener {
 
     public @Nullable PowerBlock destroyPowerBlock(@NotNull Block block) {
         final UUID worldUID = block.getWorld().getUID();
-        final Long locKey = block.getBlockKey();
+        final long locKey = block.getBlockKey();
 
         final var powerBlock = this.powerBlocks.remove(worldUID, locKey);
         if (powerBlock != null) {
@@ -211,147 +603,458 @@ public class PowerBlocksMngr implements Listener {
         return this.getPowerBlock(location.toBlockKey(), location.getWorld());
     }
 
-    public @Nullable PowerBlock getPowerBlock(@NotNull Long location, @NotNull World world) {
-        return this.getPowerBlock(location, world.getUID());
+    public @Nullable PowerBlock getPowerBlock(long location, @NotNull World world) {
+        return this.powerBlocks.get(world, location);
     }
 
-    public @Nullable PowerBlock getPowerBlock(@NotNull Long location, @NotNull UUID worldUID) {
+    public @Nullable PowerBlock getPowerBlock(long location, @NotNull UUID worldUID) {
         return this.powerBlocks.get(worldUID, location);
     }
 
     public @Nullable PowerBlock getPowerBlock(@NotNull String id) {
-        return this.powerBlocks.values()
-                .stream().filter(powerBlock -> powerBlock.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        return this.powerBlocks.get(id);
     }
 
-    class EventListener implements Listener {
+    /**
+     * @return Ids of all registered power blocks
+     */
+    public @NotNull Set<String> getPowerBlockIds() {
+        return this.powerBlocks.ids();
+    }
+
+    /**
+     * @return Snapshot of all registered power blocks
+     */
+    public @NotNull List<PowerBlock> getPowerBlocks() {
+        return this.powerBlocks.values();
+    }
+
+    class EventListener implements Listener, DamageAggregator.DamageListener, Replicator.DefeatHandler {
 
         @EventHandler
         public void handleOnPlayerJoin(final PlayerJoinEvent event) {
             final var uuid = event.getPlayer().getUniqueId();
-            final var data = PowerBlocksMngr.this.queuedRewards.remove(uuid);
-            if (data == null)
-                return;
+            PowerBlocksMngr.this.nameCache.remember(event.getPlayer());
+            PowerBlocksMngr.this.rewardDispatcher.release(uuid);
 
-            final String pwbId = data.getKey();
-            final int position = data.getValue();
-
-            PowerBlock.Codec pwbCodec = PowerBlocksMngr.this.configuration.getPowerBlockCodecs().get(pwbId);
-            if (pwbCodec == null) {
-                log.warn("Player '{}' had queued reward(#{}) for power block '{}'. But it does not exist!", event.getPlayer().getName(), position, pwbId);
+            final var rewardQueue = PowerBlocksMngr.this.rewardQueue;
+            if (rewardQueue == null)
                 return;
+
+            List<RewardQueue.Reward> rewards = PowerBlocksMngr.this.rewardPrefetcher.take(uuid);
+            if (rewards == null) {
+                // rewards were not prefetched, e.g. player logged in before queue was opened
+                rewards = rewardQueue.peek(uuid);
             }
-            List<String> commands = pwbCodec.getRewards().get(position);
-            if (commands == null) {
-                log.warn("Player '{}' had queued reward(#{}) for power block '{}'. But rewards are not specified!", event.getPlayer().getName(), position, pwbId);
+            if (rewards.isEmpty())
+                return;
+
+            final Player player = event.getPlayer();
+            final List<RewardQueue.Reward> pending = rewards;
+            Bukkit.getScheduler().runTaskLater(pluginInstance, () -> dispatchQueuedRewards(player, pending), JOIN_REWARD_DELAY_TICKS);
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void handleOnPlayerPreLogin(final AsyncPlayerPreLoginEvent event) {
+            final var rewardQueue = PowerBlocksMngr.this.rewardQueue;
+            if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED || rewardQueue == null) {
+                PowerBlocksMngr.this.rewardPrefetcher.discard(event.getUniqueId());
                 return;
             }
-            PowerBlocksMngr.this.processCommands(commands, event.getPlayer());
+            PowerBlocksMngr.this.rewardPrefetcher.prefetch(rewardQueue, event.getUniqueId());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void handleOnPlayerLogin(final PlayerLoginEvent event) {
+            if (event.getResult() != PlayerLoginEvent.Result.ALLOWED)
+                PowerBlocksMngr.this.rewardPrefetcher.discard(event.getPlayer().getUniqueId());
+        }
+
+        @EventHandler
+        public void handleOnPlayerQuit(final PlayerQuitEvent event) {
+            PowerBlocksMngr.this.nameCache.remember(event.getPlayer());
+            PowerBlocksMngr.this.rewardPrefetcher.discard(event.getPlayer().getUniqueId());
+            PowerBlocksMngr.this.damageAggregator.forget(event.getPlayer().getUniqueId());
         }
 
         @EventHandler
         public void handleOnDestroyBlock(final BlockBreakEvent event) {
-            final Block block = event.getBlock();
-            final long locKey = block.getBlockKey();
-            final UUID worldUID = block.getWorld().getUID();
+            final long start = System.nanoTime();
+            try {
+                final Block block = event.getBlock();
 
-            final PowerBlock powerBlock = PowerBlocksMngr.this.powerBlocks.get(worldUID, locKey);
-            if (powerBlock == null)
-                return;
-            // If player is in creative mode, event will be cancelled
-            if (event.getPlayer().getGameMode() == GameMode.CREATIVE && !event.getPlayer().hasPermission("warfarepowerblocks.admin")) {
-                event.getPlayer().sendMessage(Component.text("You can't break this while in CREATIVE"));
+                // chunk filter rejects almost every block before block key is even computed
+                final PowerBlock powerBlock = PowerBlocksMngr.this.powerBlocks.get(block);
+                if (powerBlock == null)
+                    return;
+                // If player is in creative mode, event will be cancelled
+                if (event.getPlayer().getGameMode() == GameMode.CREATIVE && !event.getPlayer().hasPermission("warfarepowerblocks.admin")) {
+                    event.getPlayer().sendMessage(Component.text("You can't break this while in CREATIVE"));
+                    event.setCancelled(true);
+                    return;
+                }
                 event.setCancelled(true);
+                final Player player = event.getPlayer();
+
+                // hits over the rate limit of player are dropped, accepted hits are applied at the end of tick
+                if (!PowerBlocksMngr.this.damageAggregator.hit(powerBlock, player, 1))
+                    return;
+                // effects of all hits during this tick are played at once
+                PowerBlocksMngr.this.effectsScheduler.hit(powerBlock, player);
+            } finally {
+                PowerBlocksMngr.this.destroyBlockLatency.recordSince(start);
+            }
+        }
+
+        @Override
+        public void onDamage(@NotNull PowerBlock powerBlock, @NotNull UUID attacker, int damage, int health) {
+            PowerBlocksMngr.this.replicator.recordDamage(powerBlock, attacker, damage);
+            // names of leading attackers are resolved before defeat message needs them
+            if (health > 0 && health * 100L <= (long) powerBlock.getMaximalHealthPoints() * configuration.getNamePrefetchHealthPercentage())
+                PowerBlocksMngr.this.nameCache.prefetchTop(powerBlock, Math.max(3, powerBlock.getPositionRewards().size()));
+        }
+
+        @Override
+        public void onDefeat(@NotNull PowerBlock powerBlock) {
+            // single node which claimed defeat runs it, other nodes respawn block once they receive respawn
+            PowerBlocksMngr.this.replicator.claimDefeat(powerBlock);
+        }
+
+        @Override
+        public void runDefeat(@NotNull PowerBlock powerBlock) {
+            handlePowerBlockDefeat(powerBlock);
+        }
+
+        @Override
+        public void presentDefeat(@NotNull String blockId, @Nullable PowerBlock powerBlock, @NotNull List<Map.Entry<UUID, RewardQueue.Reward>> rewards) {
+            // rewards are resolved from configuration once player joins
+            if (powerBlock == null) {
+                queueRewards(rewards);
                 return;
             }
-            event.setCancelled(true);
-            final Player player = event.getPlayer();
-            final UUID vandal = player.getUniqueId();
+            final List<Player> rewardedPlayers = reward(powerBlock, rewards);
+            // respawn of block may arrive first, defeat is shown only while block is still defeated here
+            if (powerBlock.getCurrentHealthPoints() > 0)
+                return;
+            Bukkit.broadcast(PowerBlocksMngr.this.configuration.getMessage_PowerBlockDefeated(powerBlock));
+            PowerBlocksMngr.this.effectsScheduler.defeat(powerBlock, powerBlock.canRespawn(), rewardedPlayers);
+        }
 
-            if (configuration.getBreakSound() != null)
-                configuration.getBreakSound().playTo(player);
+        @EventHandler
+        public void handleOnWorldLoad(final WorldLoadEvent event) {
+            loadWorld(event.getWorld());
+        }
 
-            if (configuration.getBreakParticle() != null)
-                configuration.getBreakParticle().showTo(player, block.getLocation());
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void handleOnWorldUnload(final WorldUnloadEvent event) {
+            unloadWorld(event.getWorld());
+        }
 
-            if (powerBlock.getBlockMemory().damage(vandal, 1) > 0)
+        @EventHandler
+        public void handleOnChunkLoad(final ChunkLoadEvent event) {
+            if (PowerBlocksMngr.this.dormantBlocks.isEmpty())
+                return;
+            final Chunk chunk = event.getChunk();
+            // chunk filter rejects chunks without power blocks without boxing chunk key
+            if (!PowerBlocksMngr.this.powerBlocks.mayContain(chunk.getWorld(), chunk.getX(), chunk.getZ()))
                 return;
+            activateChunk(chunk.getWorld(), chunk.getChunkKey());
+        }
 
-            handlePowerBlockDefeat(powerBlock);
+        @EventHandler(ignoreCancelled = true)
+        public void handleOnPistonExtend(final BlockPistonExtendEvent event) {
+            if (isAnyPowerBlock(event.getBlocks()))
+                event.setCancelled(true);
         }
 
-        private void handlePowerBlockDefeat(@NotNull PowerBlock powerBlock) {
-            final Location loc = powerBlock.getBlockLocation();
+        @EventHandler(ignoreCancelled = true)
+        public void handleOnPistonRetract(final BlockPistonRetractEvent event) {
+            if (isAnyPowerBlock(event.getBlocks()))
+                event.setCancelled(true);
+        }
 
-            log.info("§fDefeated §ePower block§7({})§f at {} {} {}({}) with key {}. Total participants count: {}. Total health points: {}",
-                    powerBlock.getId(),
-                    loc.getBlockX(),
-                    loc.getBlockY(),
-                    loc.getBlockZ(),
-                    loc.getWorld().getName(),
-                    loc.toBlockKey(),
-                    powerBlock.getBlockMemory().getAttackers().size(),
-                    powerBlock.getMaximalHealthPoints()
-            );
+        @EventHandler(ignoreCancelled = true)
+        public void handleOnEntityExplode(final EntityExplodeEvent event) {
+            final List<PowerBlock> hitBlocks = PowerBlocksMngr.this.powerBlocks.extract(event.getLocation().getWorld(), event.blockList());
+            if (!hitBlocks.isEmpty())
+                handleExplosion(hitBlocks, getExplosionSource(event.getEntity()));
+        }
 
-            Bukkit.broadcast(PowerBlocksMngr.this.configuration.getMessage_PowerBlockDefeated(powerBlock));
+        @EventHandler(ignoreCancelled = true)
+        public void handleOnBlockExplode(final BlockExplodeEvent event) {
+            // beds and respawn anchors have no source player, power blocks are only protected
+            PowerBlocksMngr.this.powerBlocks.extract(event.getBlock().getWorld(), event.blockList());
+        }
 
-            final var positionRewards = powerBlock.getPositionRewards();
-            final var attackersSorted = powerBlock.getBlockMemory().getAttackersSorted();
-
-            // rewards
-            for (int i = 0;
-                 (attackersSorted.size() > positionRewards.size()
-                         ? i < positionRewards.size()
-                         : i < attackersSorted.size());
-                 i++) {
-
-                final var attackerData = attackersSorted.get(i);
-                final var uuid = attackerData.getKey();
-                final var damage = attackerData.getValue();
-
-                final var player = Bukkit.getPlayer(uuid);
-                if (player == null || !player.isOnline())
-                    PowerBlocksMngr.this.queuedRewards.put(uuid, Map.entry(powerBlock.getId(), i));
-                else {
-                    final var commands = positionRewards.get(i + 1);
-                    processCommands(commands, player);
-
-                    if (powerBlock.canRespawn()) {
-                        if (configuration.getRespawnSound() != null)
-                            configuration.getRespawnSound().playTo(player);
-                    } else {
-                        if (configuration.getDefeatSound() != null)
-                            configuration.getDefeatSound().playTo(player);
-                    }
+        @EventHandler
+        public void handleOnProjectileHit(final ProjectileHitEvent event) {
+            final Block block = event.getHitBlock();
+            if (block == null || !(event.getEntity().getShooter() instanceof Player))
+                return;
+            final PowerBlock powerBlock = PowerBlocksMngr.this.powerBlocks.get(block);
+            if (powerBlock == null)
+                return;
+
+            final Player player = (Player) event.getEntity().getShooter();
+            final int damage = configuration.getProjectileDamage();
+            if (damage <= 0 || player.getGameMode() == GameMode.CREATIVE)
+                return;
+            // projectiles share rate limit with hits, so spamming arrows does not bypass it
+            if (!PowerBlocksMngr.this.damageAggregator.hit(powerBlock, player, damage))
+                return;
+            PowerBlocksMngr.this.effectsScheduler.hit(powerBlock, player);
+        }
+
+        private void handleExplosion(@NotNull List<PowerBlock> hitBlocks, @Nullable Player source) {
+            final int damage = configuration.getExplosionDamage();
+            if (source == null || damage <= 0)
+                return;
+            for (PowerBlock powerBlock : hitBlocks) {
+                PowerBlocksMngr.this.damageAggregator.damage(powerBlock, source.getUniqueId(), damage);
+                if (source.isOnline())
+                    PowerBlocksMngr.this.effectsScheduler.hit(powerBlock, source);
+            }
+        }
+
+        /**
+         * @param entity Exploding entity
+         * @return Player to whom explosion is attributed or null
+         */
+        private @Nullable Player getExplosionSource(@NotNull Entity entity) {
+            if (entity instanceof TNTPrimed)
+                return getResponsiblePlayer(((TNTPrimed) entity).getSource());
+            // target of creeper is its victim, so creeper explosion is credited to player who last hit the creeper
+            if (entity instanceof Creeper) {
+                final EntityDamageEvent cause = entity.getLastDamageCause();
+                return cause instanceof EntityDamageByEntityEvent
+                        ? getResponsiblePlayer(((EntityDamageByEntityEvent) cause).getDamager())
+                        : null;
+            }
+            // fireballs, wither skulls
+            if (entity instanceof Projectile)
+                return getResponsiblePlayer(entity);
+            return null;
+        }
+
+        /**
+         * @param entity Player or projectile, for example burning arrow which ignited tnt
+         * @return Player who is responsible for entity or null
+         */
+        private @Nullable Player getResponsiblePlayer(@Nullable Entity entity) {
+            if (entity instanceof Player)
+                return (Player) entity;
+            if (entity instanceof Projectile && ((Projectile) entity).getShooter() instanceof Player)
+                return (Player) ((Projectile) entity).getShooter();
+            return null;
+        }
+
+        private boolean isAnyPowerBlock(@NotNull List<Block> blocks) {
+            for (Block block : blocks) {
+                if (PowerBlocksMngr.this.powerBlocks.get(block) != null)
+                    return true;
+            }
+            return false;
+        }
+
+        private void handlePowerBlockDefeat(@NotNull PowerBlock powerBlock) {
+            final long start = System.nanoTime();
+            final PowerBlockDefeatEvent event = new PowerBlockDefeatEvent();
+            event.begin();
+            // attackers are counted before respawn clears them
+            final int attackerCount = powerBlock.getBlockMemory().getAttackers().size();
+            int rewardedCount = 0;
+            try {
+                final Location loc = powerBlock.getBlockLocation();
+
+                log.info("§fDefeated §ePower block§7({})§f at {} {} {}({}) with key {}. Total participants count: {}. Total health points: {}",
+                        powerBlock.getId(),
+                        loc.getBlockX(),
+                        loc.getBlockY(),
+                        loc.getBlockZ(),
+                        loc.getWorld().getName(),
+                        loc.toBlockKey(),
+                        attackerCount,
+                        powerBlock.getMaximalHealthPoints()
+                );
+
+                Bukkit.broadcast(PowerBlocksMngr.this.configuration.getMessage_PowerBlockDefeated(powerBlock));
+
+                final var positionRewards = powerBlock.getPositionRewards();
+                final var attackersSorted = powerBlock.getBlockMemory().getTopAttackers(positionRewards.size());
+                rewardedCount = Math.min(attackersSorted.size(), positionRewards.size());
+                final List<Map.Entry<UUID, RewardQueue.Reward>> rewards = new ArrayList<>(rewardedCount);
+                final Map<String, List<Map.Entry<UUID, RewardQueue.Reward>>> remoteRewards = new HashMap<>();
+
+                // rewards
+                for (int i = 0;
+                     (attackersSorted.size() > positionRewards.size()
+                             ? i < positionRewards.size()
+                             : i < attackersSorted.size());
+                     i++) {
+
+                    final var attackerData = attackersSorted.get(i);
+                    final var uuid = attackerData.getKey();
+                    final var damage = attackerData.getValue();
+
+                    final var reward = Map.entry(uuid, new RewardQueue.Reward(powerBlock.getId(), i + 1, damage));
+                    // attacker who is not here is rewarded by node where he dealt most damage, so he gets it where he plays
+                    final var player = Bukkit.getPlayer(uuid);
+                    final String node = player == null || !player.isOnline() ? PowerBlocksMngr.this.replicator.rewardNode(powerBlock, uuid) : null;
+                    if (node != null)
+                        remoteRewards.computeIfAbsent(node, key -> new ArrayList<>()).add(reward);
+                    else
+                        rewards.add(reward);
+                }
+                final List<Player> rewardedPlayers = reward(powerBlock, rewards);
+                PowerBlocksMngr.this.replicator.recordDefeat(powerBlock, remoteRewards);
+                PowerBlocksMngr.this.effectsScheduler.defeat(powerBlock, powerBlock.canRespawn(), rewardedPlayers);
+                if (powerBlock.respawn())
+                    PowerBlocksMngr.this.replicator.recordRespawn(powerBlock);
+            } finally {
+                PowerBlocksMngr.this.defeatLatency.recordSince(start);
+                if (event.shouldCommit()) {
+                    event.blockId = powerBlock.getId();
+                    event.attackerCount = attackerCount;
+                    event.rewardedCount = rewardedCount;
+                    event.commit();
                 }
             }
-            powerBlock.respawn();
         }
     }
 
 
-    private void processCommands(@NotNull Iterable<String> commands, @NotNull Player player) {
-        commands.forEach(command -> {
-            boolean self = command.startsWith("@");
-            command = command.replaceAll("%player%", player.getName());
+    /**
+     * Gives rewards of defeat to online players and queues rewards of offline players
+     *
+     * @return Rewarded online players
+     */
+    private @NotNull List<Player> reward(@NotNull PowerBlock powerBlock, @NotNull List<Map.Entry<UUID, RewardQueue.Reward>> rewards) {
+        final var positionRewards = powerBlock.getPositionRewards();
+        final List<Player> rewardedPlayers = new ArrayList<>(rewards.size());
+        final List<Map.Entry<UUID, RewardQueue.Reward>> offlineRewards = new ArrayList<>();
+        for (Map.Entry<UUID, RewardQueue.Reward> entry : rewards) {
+            final RewardQueue.Reward reward = entry.getValue();
+            final var player = Bukkit.getPlayer(entry.getKey());
+            if (player == null || !player.isOnline())
+                offlineRewards.add(entry);
+            else {
+                final var commands = positionRewards.get(reward.getRank());
+                if (commands != null)
+                    processCommands(commands, player, powerBlock.getId(), reward.getRank(), reward.getDamage());
+                rewardedPlayers.add(player);
+            }
+        }
+        queueRewards(offlineRewards);
+        return rewardedPlayers;
+    }
+
+    /**
+     * Hands queued rewards of joined player to dispatcher and claims them asynchronously.
+     * Rewards of player who already left stay queued for next join.
+     */
+    private void dispatchQueuedRewards(@NotNull Player player, @NotNull List<RewardQueue.Reward> pending) {
+        if (!player.isOnline())
+            return;
+
+        // rewards are reserved before they are dispatched, so player who logs in again before claim is written
+        // does not get them again; only rewards read during login are reserved, rewards queued since then are kept
+        final UUID uuid = player.getUniqueId();
+        final RewardQueue rewardQueue = this.rewardQueue;
+        final List<RewardQueue.Reward> rewards = rewardQueue.reserve(uuid, pending);
+        if (rewards.isEmpty())
+            return;
+
+        for (RewardQueue.Reward reward : rewards) {
+            final String pwbId = reward.getBlockId();
+            final int rank = reward.getRank();
+
+            PowerBlock.Codec pwbCodec = this.configuration.getPowerBlockCodecs().get(pwbId);
+            if (pwbCodec == null) {
+                log.warn("Player '{}' had queued reward(#{}) for power block '{}'. But it does not exist!", player.getName(), rank, pwbId);
+                continue;
+            }
+            List<RewardCommand> commands = pwbCodec.getRewards().get(rank);
+            if (commands == null) {
+                log.warn("Player '{}' had queued reward(#{}) for power block '{}'. But rewards are not specified!", player.getName(), rank, pwbId);
+                continue;
+            }
+            processCommands(commands, player, pwbId, rank, reward.getDamage());
+        }
+
+        // claim is written once commands are written to dispatch journal, so crash loses neither
+        this.rewardDispatcher.persist().thenRun(() -> {
+            try {
+                rewardQueue.writeClaim(uuid, rewards.size());
+            } catch (IOException e) {
+                log.error("Couldn't claim queued rewards of player '{}'", uuid, e);
+            }
+        });
+    }
 
-            if (self)
-                player.performCommand(command.substring(1));
-            else
-                Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
+    /**
+     * Queues rewards of offline players of single defeat. Rewards are written asynchronously with single forced write,
+     * so defeat tick does not wait for disk.
+     */
+    private void queueRewards(@NotNull List<Map.Entry<UUID, RewardQueue.Reward>> rewards) {
+        if (rewards.isEmpty())
+            return;
+        final RewardQueue rewardQueue = this.rewardQueue;
+        if (rewardQueue == null) {
+            log.error("{} rewards of offline players were lost, reward queue is not open.", rewards.size());
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(pluginInstance, () -> {
+            try {
+                rewardQueue.addAll(rewards);
+            } catch (IOException e) {
+                log.error("Couldn't queue {} rewards of offline players", rewards.size(), e);
+            }
         });
     }
 
-    class Configuration implements ICodec {
+    /**
+     * Moves rewards from legacy JSON queue, which held single reward with zero-based position per player
+     */
+    private void migrateRewardQueue() throws Exception {
+        final File legacyFile = new File(pluginInstance.getDataFolder(), "data/reward_queue.json");
+        if (!legacyFile.exists())
+            return;
+
+        AStore legacyStore = pluginInstance.getStorageProvider().provideJson("", "data/reward_queue.json", false);
+        final JsonObject data = (JsonObject) legacyStore.getUnderlyingDataSource();
+        if (data != null) {
+            final List<Map.Entry<UUID, RewardQueue.Reward>> rewards = new ArrayList<>(data.size());
+            for (var entry : data.entrySet()) {
+                final JsonObject playerDataJson = entry.getValue().getAsJsonObject();
+                rewards.add(Map.entry(UUID.fromString(entry.getKey()), new RewardQueue.Reward(
+                        playerDataJson.get("pwb_id").getAsString(),
+                        playerDataJson.get("position").getAsInt() + 1,
+                        0)));
+            }
+            this.rewardQueue.addAll(rewards);
+            log.info("Migrated {} rewards from legacy queue file.", data.size());
+        }
+        Files.move(legacyFile.toPath(), new File(legacyFile.getPath() + ".migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Queues reward commands, they are dispatched within time budget of following ticks
+     */
+    private void processCommands(@NotNull List<RewardCommand> commands, @NotNull Player player,
+                                 @NotNull String blockId, int rank, int damage) {
+        this.rewardDispatcher.enqueue(commands, player, blockId, rank, damage);
+    }
+
+    public class Configuration implements ICodec {
         @Getter
         private final Map<String, PowerBlock.Codec> powerBlockCodecs = new HashMap<>();
 
         @CodecKey("messages.pwb-defeated")
         private final List<String> pwbDefeated = new ArrayList<>();
 
+        private MessageTemplate pwbDefeatedTemplate = MessageTemplate.parse("", DEFEAT_MESSAGE_SLOTS);
+        private final Map<String, Map.Entry<PowerBlock, MessageTemplate>> blockDefeatedTemplates = new ConcurrentHashMap<>();
+
         @CodecKey("data.save-interval-minutes")
         @Getter
         private final int dataSaveInterval = 180;
@@ -381,26 +1084,116 @@ public class PowerBlocksMngr implements Listener {
         @Getter
         private ParticleCodec defeatParticle = new ParticleCodec();
 
+        @CodecKey("settings.effects")
+        @Getter
+        private EffectsCodec effects = new EffectsCodec();
+
+        @CodecKey("settings.rewards.dispatch-budget-ms")
+        @Getter
+        private double rewardDispatchBudget = 2;
+
+        @CodecKey("settings.names.prefetch-health-percentage")
+        @Getter
+        private int namePrefetchHealthPercentage = 25;
+
+        @CodecKey("settings.damage.hits-per-second")
+        @Getter
+        private double hitsPerSecond = 10;
+
+        @CodecKey("settings.blocks.preload-chunks")
+        @Getter
+        private boolean preloadChunks = false;
+
+        @CodecKey("settings.damage.explosion")
+        @Getter
+        private int explosionDamage = 5;
+
+        @CodecKey("settings.damage.projectile")
+        @Getter
+        private int projectileDamage = 1;
+
+        @CodecKey("settings.metrics.dump-interval-minutes")
+        @Getter
+        private int metricsDumpInterval = 0;
+
+        @CodecKey("settings.metrics.dump-file")
+        @Getter
+        private String metricsDumpFile = "metrics.log";
+
+        @CodecKey("settings.metrics.prometheus.enabled")
+        @Getter
+        private boolean prometheusEnabled = false;
+
+        @CodecKey("settings.metrics.prometheus.host")
+        @Getter
+        private String prometheusHost = "127.0.0.1";
+
+        @CodecKey("settings.metrics.prometheus.port")
+        @Getter
+        private int prometheusPort = 9464;
+
+        @CodecKey("settings.replication.enabled")
+        @Getter
+        private boolean replicationEnabled = false;
+
+        @CodecKey("settings.replication.node-id")
+        @Getter
+        private String replicationNodeId = "";
+
+        @CodecKey("settings.replication.claim-window-ticks")
+        @Getter
+        private int replicationClaimWindow = 20;
+
+        @CodecKey("settings.replication.transport")
+        @Getter
+        private String replicationTransport = "loopback";
+
+        @CodecKey("settings.replication.batch-interval-ticks")
+        @Getter
+        private int replicationBatchInterval = 5;
+
+        @CodecKey("settings.replication.full-sync-interval-ticks")
+        @Getter
+        private int replicationFullSyncInterval = 1200;
+
 
         public @NotNull Component getMessage_PowerBlockDefeated(@NotNull PowerBlock block) {
-            final Map<String, String> placeholders = new HashMap<>();
-            final var attackers = block.getBlockMemory().getAttackersSorted();
-
-            placeholders.put("pwb-max-health", block.getMaximalHealthPoints() + "");
-            for (int i = 0; i < (Math.min(attackers.size(), 3)); i++) {
-                final String attackerName = Bukkit.getOfflinePlayer(attackers.get(i).getKey()).getName();
-                final Integer attackerScore = attackers.get(i).getValue();
-                placeholders.put((i + 1) + "-attacker", attackerName);
-                placeholders.put((i + 1) + "-attacker-damage", attackerScore + "");
-                placeholders.put((i + 1) + "-attacker-damage-%", Math.round((block.getMaximalHealthPoints() / attackerScore) * 100f) + "");
+            // slots of block are filled once for every registered instance of block
+            var blockTemplate = this.blockDefeatedTemplates.get(block.getId());
+            if (blockTemplate == null || blockTemplate.getKey() != block) {
+                blockTemplate = Map.entry(block, this.pwbDefeatedTemplate.fill(Map.of(
+                        "pwb-name", block.getName(),
+                        "pwb-max-health", Component.text(block.getMaximalHealthPoints())
+                )));
+                this.blockDefeatedTemplates.put(block.getId(), blockTemplate);
             }
 
-            Component component = MiniMessage.markdown().parse(Strings.join(pwbDefeated, '\n'), placeholders);
-            component = component.replaceText(TextReplacementConfig.builder()
-                    .match("<pwb-name>")
-                    .replacement(block.getName())
-                    .build());
-            return component;
+            final Map<String, Component> values = new HashMap<>();
+            final int maxHealth = block.getMaximalHealthPoints();
+            final var attackers = block.getBlockMemory().getTopAttackers(DEFEAT_MESSAGE_ATTACKERS);
+            for (int i = 0; i < attackers.size(); i++) {
+                final String attackerName = PowerBlocksMngr.this.nameCache.getNameOrId(attackers.get(i).getKey());
+                final int attackerScore = attackers.get(i).getValue();
+                values.put((i + 1) + "-attacker", Component.text(attackerName));
+                values.put((i + 1) + "-attacker-damage", Component.text(attackerScore));
+                values.put((i + 1) + "-attacker-damage-%", Component.text(maxHealth > 0 ? Math.round(attackerScore * 100f / maxHealth) : 0));
+            }
+            return blockTemplate.getValue().render(values);
+        }
+
+        /**
+         * Writes built-in defaults of all settings to configuration.defaults.yaml, so settings added by newer versions
+         * can be looked up without replacing configuration. Defaults are streamed, no data tree is built.
+         */
+        private void writeDefaults() {
+            final File file = new File(pluginInstance.getDataFolder(), "configuration.defaults.yaml");
+            try (final Writer output = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+                 final AuxWriter writer = AuxWriter.toYaml(output)) {
+                output.write("# Built-in defaults of all settings, rewritten on every load. Edit configuration.yaml instead.\n");
+                writer.encode(new Configuration());
+            } catch (Exception x) {
+                log.error("Couldn't write default configuration", x);
+            }
         }
 
         public void loadConfiguration() {
@@ -416,6 +1209,7 @@ public class PowerBlocksMngr implements Listener {
                 return Optional.empty();
             }).ifPresent((config) -> {
                 final var data = config.getData();
+                this.powerBlockCodecs.clear();
 
                 // resolve Configuration codec
                 try {
@@ -423,6 +1217,9 @@ public class PowerBlocksMngr implements Listener {
                 } catch (Exception e) {
                     log.error("Couldn't decode settings.", e);
                 }
+                writeDefaults();
+                this.pwbDefeatedTemplate = MessageTemplate.parse(String.join("\n", this.pwbDefeated), DEFEAT_MESSAGE_SLOTS);
+                this.blockDefeatedTemplates.clear();
 
                 final var powerBlocksCodecsSector = data.getSector("power-blocks");
                 if (powerBlocksCodecsSector == null) {
@@ -0,0 +1,235 @@
+package xyz.rgnt.wfpowerblocks.block;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Indexed skip list of attackers ordered by damage, highest first. Ties are ordered by UUID.
+ * <p>
+ * Every link stores its span, so rank of attacker and attacker at rank are resolved in O(log n).
+ * Nodes are reused when damage changes, so only first hit of attacker allocates.
+ * Not thread safe, {@link AttackerTable} synchronizes access.
+ */
+class AttackerRanking {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final Node header = new Node(0, 0, 0, MAX_LEVEL);
+    private int level = 1;
+    private int length = 0;
+
+    // scratch arrays reused by every insert and delete
+    private final Node[] update = new Node[MAX_LEVEL];
+    private final int[] rank = new int[MAX_LEVEL];
+
+    /**
+     * Inserts new attacker
+     *
+     * @return Node of attacker
+     */
+    @NotNull Node insert(long most, long least, int damage) {
+        final Node node = new Node(most, least, damage, randomLevel());
+        link(node);
+        return node;
+    }
+
+    /**
+     * Changes damage of attacker and moves it to its new position
+     *
+     * @param node   Node of attacker
+     * @param damage New damage
+     */
+    void update(@NotNull Node node, int damage) {
+        final Node previous = node.backward;
+        final Node next = node.forward[0];
+        // position is unchanged, which is common for leading attackers
+        if ((previous == null || isBefore(previous.damage, previous.most, previous.least, damage, node.most, node.least))
+                && (next == null || isBefore(damage, node.most, node.least, next.damage, next.most, next.least))) {
+            node.damage = damage;
+            return;
+        }
+
+        unlink(node);
+        node.damage = damage;
+        link(node);
+    }
+
+    /**
+     * @param node Node of attacker
+     * @return Rank of attacker starting with 1
+     */
+    int rankOf(@NotNull Node node) {
+        int rank = 0;
+        Node x = this.header;
+        for (int i = this.level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && (x.forward[i] == node || isBefore(x.forward[i], node))) {
+                rank += x.span[i];
+                x = x.forward[i];
+            }
+            if (x == node)
+                return rank;
+        }
+        return 0;
+    }
+
+    /**
+     * @param rank Rank starting with 1
+     * @return Node at rank or null
+     */
+    @Nullable Node atRank(int rank) {
+        if (rank < 1 || rank > this.length)
+            return null;
+
+        int traversed = 0;
+        Node x = this.header;
+        for (int i = this.level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && traversed + x.span[i] <= rank) {
+                traversed += x.span[i];
+                x = x.forward[i];
+            }
+            if (traversed == rank)
+                return x;
+        }
+        return null;
+    }
+
+    /**
+     * @return Node of first attacker or null
+     */
+    @Nullable Node first() {
+        return this.header.forward[0];
+    }
+
+    int size() {
+        return this.length;
+    }
+
+    void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            this.header.forward[i] = null;
+            this.header.span[i] = 0;
+        }
+        this.level = 1;
+        this.length = 0;
+    }
+
+    private void link(@NotNull Node node) {
+        final Node[] update = this.update;
+        final int[] rank = this.rank;
+
+        Node x = this.header;
+        for (int i = this.level - 1; i >= 0; i--) {
+            rank[i] = i == this.level - 1 ? 0 : rank[i + 1];
+            while (x.forward[i] != null && isBefore(x.forward[i], node)) {
+                rank[i] += x.span[i];
+                x = x.forward[i];
+            }
+            update[i] = x;
+        }
+
+        final int nodeLevel = node.forward.length;
+        if (nodeLevel > this.level) {
+            for (int i = this.level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = this.header;
+                update[i].span[i] = this.length;
+            }
+            this.level = nodeLevel;
+        }
+
+        for (int i = 0; i < nodeLevel; i++) {
+            node.forward[i] = update[i].forward[i];
+            update[i].forward[i] = node;
+
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = nodeLevel; i < this.level; i++)
+            update[i].span[i]++;
+
+        node.backward = update[0] == this.header ? null : update[0];
+        if (node.forward[0] != null)
+            node.forward[0].backward = node;
+        this.length++;
+    }
+
+    private void unlink(@NotNull Node node) {
+        final Node[] update = this.update;
+
+        Node x = this.header;
+        for (int i = this.level - 1; i >= 0; i--) {
+            while (x.forward[i] != null && isBefore(x.forward[i], node))
+                x = x.forward[i];
+            update[i] = x;
+        }
+
+        for (int i = 0; i < this.level; i++) {
+            if (update[i].forward[i] == node) {
+                update[i].span[i] += node.span[i] - 1;
+                update[i].forward[i] = node.forward[i];
+            } else
+                update[i].span[i]--;
+        }
+
+        if (node.forward[0] != null)
+            node.forward[0].backward = node.backward;
+
+        while (this.level > 1 && this.header.forward[this.level - 1] == null)
+            this.level--;
+        this.length--;
+
+        for (int i = 0; i < node.forward.length; i++) {
+            node.forward[i] = null;
+            node.span[i] = 0;
+        }
+        node.backward = null;
+    }
+
+    private static boolean isBefore(@NotNull Node a, @NotNull Node b) {
+        return isBefore(a.damage, a.most, a.least, b.damage, b.most, b.least);
+    }
+
+    private static boolean isBefore(int damageA, long mostA, long leastA, int damageB, long mostB, long leastB) {
+        if (damageA != damageB)
+            return damageA > damageB;
+        if (mostA != mostB)
+            return mostA < mostB;
+        return leastA < leastB;
+    }
+
+    private static int randomLevel() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        int level = 1;
+        // p = 1/4
+        while (level < MAX_LEVEL && (random.nextInt() & 3) == 0)
+            level++;
+        return level;
+    }
+
+    /**
+     * Attacker in ranking
+     */
+    static class Node {
+        final long most;
+        final long least;
+        int damage;
+
+        final Node[] forward;
+        final int[] span;
+        @Nullable Node backward;
+
+        private Node(long most, long least, int damage, int level) {
+            this.most = most;
+            this.least = least;
+            this.damage = damage;
+            this.forward = new Node[level];
+            this.span = new int[level];
+        }
+
+        @Nullable Node next() {
+            return this.forward[0];
+        }
+    }
+}
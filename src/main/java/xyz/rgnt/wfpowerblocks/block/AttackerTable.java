@@ -0,0 +1,360 @@
+package xyz.rgnt.wfpowerblocks.block;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Accumulates damage of attackers and keeps them ranked by damage.
+ * <p>
+ * Damage of every attacker is kept in its own counter, which is incremented with CAS, so hits never wait for ranking.
+ * Counters are found in open-addressing tables keyed by both halves of UUID and split into {@link #STRIPES} stripes,
+ * each guarded by its own lock, which is held only for lookup. Adding damage of known attacker does not allocate.
+ * <p>
+ * Counters changed since last ranked query are pushed to lock-free stack and {@link AttackerRanking} is reconciled
+ * with them lazily by the next ranked query, so cost of moving attackers in ranking is paid by readers, and every
+ * attacker is moved at most once between two queries regardless of count of its hits.
+ */
+public class AttackerTable {
+
+    /**
+     * Count of stripes, power of two
+     */
+    private static final int STRIPES = 16;
+
+    private final Table[] stripes = new Table[STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * Head of stack of counters changed since last reconcile, linked by {@link Counter#nextChanged}
+     */
+    private final AtomicReference<Counter> changed = new AtomicReference<>();
+    /**
+     * Guards ranking and ranking nodes of counters
+     */
+    private final AttackerRanking ranking = new AttackerRanking();
+
+    /**
+     * Default constructor
+     */
+    public AttackerTable() {
+        for (int i = 0; i < STRIPES; i++)
+            this.stripes[i] = new Table();
+    }
+
+    /**
+     * Adds damage to attacker
+     *
+     * @param attacker Attacker
+     * @param damage   Damage dealt by attacker
+     * @return Total damage of attacker
+     */
+    public int add(@NotNull UUID attacker, int damage) {
+        final long most = attacker.getMostSignificantBits();
+        final long least = attacker.getLeastSignificantBits();
+        final int hash = hash(most, least);
+
+        final Table stripe = stripe(hash);
+        Counter counter;
+        synchronized (stripe) {
+            counter = stripe.find(most, least, hash);
+            if (counter == null) {
+                counter = new Counter(most, least);
+                stripe.insert(hash, counter);
+                this.size.incrementAndGet();
+            }
+        }
+
+        final int total = Counter.DAMAGE.addAndGet(counter, damage);
+        markChanged(counter);
+        return total;
+    }
+
+    /**
+     * @param attacker Attacker
+     * @return Total damage of attacker, 0 if attacker is unknown
+     */
+    public int get(@NotNull UUID attacker) {
+        final Counter counter = findCounter(attacker);
+        return counter != null ? counter.damage : 0;
+    }
+
+    /**
+     * @param attacker Attacker
+     * @return Rank of attacker starting with 1, 0 if attacker is unknown
+     */
+    public int rankOf(@NotNull UUID attacker) {
+        final Counter counter = findCounter(attacker);
+        if (counter == null)
+            return 0;
+        synchronized (this.ranking) {
+            reconcile();
+            return counter.node != null ? this.ranking.rankOf(counter.node) : 0;
+        }
+    }
+
+    /**
+     * @param attacker Attacker
+     * @return Damage attacker needs to reach damage of attacker ranked right above him,
+     * 0 if attacker is first or unknown
+     */
+    public int gapOf(@NotNull UUID attacker) {
+        final Counter counter = findCounter(attacker);
+        if (counter == null)
+            return 0;
+        synchronized (this.ranking) {
+            reconcile();
+            final AttackerRanking.Node node = counter.node;
+            if (node == null)
+                return 0;
+            final AttackerRanking.Node previous = node.backward;
+            return previous != null ? previous.damage - node.damage : 0;
+        }
+    }
+
+    /**
+     * @param rank Rank starting with 1
+     * @return Attacker and its damage at specified rank or null
+     */
+    public @Nullable Map.Entry<UUID, Integer> atRank(int rank) {
+        synchronized (this.ranking) {
+            reconcile();
+            final AttackerRanking.Node node = this.ranking.atRank(rank);
+            return node != null ? entry(node) : null;
+        }
+    }
+
+    /**
+     * @param count Maximal count of attackers
+     * @return Attackers with highest damage, highest first
+     */
+    public @NotNull List<Map.Entry<UUID, Integer>> top(int count) {
+        synchronized (this.ranking) {
+            reconcile();
+            final List<Map.Entry<UUID, Integer>> top = new ArrayList<>(Math.min(count, this.ranking.size()));
+            for (AttackerRanking.Node node = this.ranking.first(); node != null && top.size() < count; node = node.next())
+                top.add(entry(node));
+            return top;
+        }
+    }
+
+    /**
+     * Iterates over attackers with highest damage, highest first. Ranking is locked during iteration,
+     * hits are not blocked by it.
+     *
+     * @param count    Maximal count of attackers
+     * @param consumer Consumer
+     */
+    public void forEachTop(int count, @NotNull AttackerConsumer consumer) {
+        synchronized (this.ranking) {
+            reconcile();
+            int remaining = count;
+            for (AttackerRanking.Node node = this.ranking.first(); node != null && remaining-- > 0; node = node.next())
+                consumer.accept(node.most, node.least, node.damage);
+        }
+    }
+
+    /**
+     * @return Count of attackers
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Removes all attackers. Damage added concurrently with clear may be lost.
+     */
+    public void clear() {
+        synchronized (this.ranking) {
+            for (Table stripe : this.stripes) {
+                synchronized (stripe) {
+                    for (Counter counter : stripe.counters)
+                        if (counter != null)
+                            counter.cleared = true;
+                    stripe.clear();
+                }
+            }
+            this.size.set(0);
+            this.ranking.clear();
+            reconcile();
+        }
+    }
+
+    /**
+     * Iterates over all attackers in ranked order. Ranking is locked during iteration.
+     *
+     * @param consumer Consumer
+     */
+    public void forEach(@NotNull AttackerConsumer consumer) {
+        forEachTop(Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * @return Snapshot of all attackers and their damage, highest first
+     */
+    public @NotNull List<Map.Entry<UUID, Integer>> entries() {
+        return top(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Pushes counter to changed stack unless it is there already
+     */
+    private void markChanged(@NotNull Counter counter) {
+        if (counter.changed != 0 || !Counter.CHANGED.compareAndSet(counter, 0, 1))
+            return;
+        Counter head;
+        do {
+            head = this.changed.get();
+            counter.nextChanged = head;
+        } while (!this.changed.compareAndSet(head, counter));
+    }
+
+    /**
+     * Moves changed counters to their positions in ranking, must be called while ranking is locked
+     */
+    private void reconcile() {
+        Counter counter = this.changed.getAndSet(null);
+        while (counter != null) {
+            final Counter next = counter.nextChanged;
+            counter.nextChanged = null;
+            // flag is cleared before damage is read, so later hit pushes counter again
+            counter.changed = 0;
+            if (!counter.cleared) {
+                final int damage = counter.damage;
+                if (counter.node == null)
+                    counter.node = this.ranking.insert(counter.most, counter.least, damage);
+                else if (counter.node.damage != damage)
+                    this.ranking.update(counter.node, damage);
+            }
+            counter = next;
+        }
+    }
+
+    private @Nullable Counter findCounter(@NotNull UUID attacker) {
+        final long most = attacker.getMostSignificantBits();
+        final long least = attacker.getLeastSignificantBits();
+        final int hash = hash(most, least);
+        final Table stripe = stripe(hash);
+        synchronized (stripe) {
+            return stripe.find(most, least, hash);
+        }
+    }
+
+    private @NotNull Table stripe(int hash) {
+        // table index uses low bits of hash, so stripe is chosen by high bits
+        return this.stripes[hash >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES))];
+    }
+
+    private static @NotNull Map.Entry<UUID, Integer> entry(@NotNull AttackerRanking.Node node) {
+        return new AbstractMap.SimpleImmutableEntry<>(new UUID(node.most, node.least), node.damage);
+    }
+
+    private static int hash(long most, long least) {
+        long hash = most * 0x9e3779b97f4a7c15L ^ least;
+        hash ^= hash >>> 32;
+        hash *= 0xd6e8feb86659fd93L;
+        return (int) (hash ^ hash >>> 32);
+    }
+
+    /**
+     * Consumer of attacker data
+     */
+    @FunctionalInterface
+    public interface AttackerConsumer {
+        void accept(long mostSigBits, long leastSigBits, int damage);
+    }
+
+    /**
+     * Damage counter of attacker
+     */
+    private static class Counter {
+        private static final AtomicIntegerFieldUpdater<Counter> DAMAGE = AtomicIntegerFieldUpdater.newUpdater(Counter.class, "damage");
+        private static final AtomicIntegerFieldUpdater<Counter> CHANGED = AtomicIntegerFieldUpdater.newUpdater(Counter.class, "changed");
+
+        private final long most;
+        private final long least;
+        private volatile int damage;
+
+        /**
+         * 1 while counter is in changed stack
+         */
+        private volatile int changed;
+        private @Nullable Counter nextChanged;
+        private volatile boolean cleared;
+
+        /**
+         * Guarded by ranking
+         */
+        private @Nullable AttackerRanking.Node node;
+
+        private Counter(long most, long least) {
+            this.most = most;
+            this.least = least;
+        }
+    }
+
+    /**
+     * Open-addressing table of counters of one stripe, guarded by itself
+     */
+    private static class Table {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private Counter[] counters;
+        private int size;
+
+        private Table() {
+            clear();
+        }
+
+        private @Nullable Counter find(long most, long least, int hash) {
+            final int mask = this.counters.length - 1;
+            int index = hash & mask;
+            Counter counter;
+            while ((counter = this.counters[index]) != null) {
+                if (counter.most == most && counter.least == least)
+                    return counter;
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private void insert(int hash, @NotNull Counter counter) {
+            final int mask = this.counters.length - 1;
+            int index = hash & mask;
+            while (this.counters[index] != null)
+                index = (index + 1) & mask;
+            this.counters[index] = counter;
+
+            // keep load factor under 0.5
+            if (++this.size * 2 > this.counters.length)
+                resize(this.counters.length * 2);
+        }
+
+        private void resize(int capacity) {
+            final Counter[] oldCounters = this.counters;
+            this.counters = new Counter[capacity];
+
+            final int mask = capacity - 1;
+            for (Counter counter : oldCounters) {
+                if (counter == null)
+                    continue;
+                int index = hash(counter.most, counter.least) & mask;
+                while (this.counters[index] != null)
+                    index = (index + 1) & mask;
+                this.counters[index] = counter;
+            }
+        }
+
+        private void clear() {
+            this.counters = new Counter[INITIAL_CAPACITY];
+            this.size = 0;
+        }
+    }
+}
@@ -14,13 +14,17 @@ import org.jetbrains.annotations.Nullable;
 import xyz.rgnt.revoken.common.providers.storage.data.AuxData;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.ICodec;
 import xyz.rgnt.revoken.common.providers.storage.data.codec.meta.CodecKey;
+import xyz.rgnt.wfpowerblocks.rewards.RewardCommand;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Power block class represents world block with special abilities
+ * Power block class represents world block with special abilities.
+ * <p>
+ * Power block constructed from configuration is dormant, it holds only its location until its chunk is loaded
+ * and it is {@link #activate() activated}, so loading of power blocks never loads chunks.
  */
 public class PowerBlock {
 
@@ -30,14 +34,51 @@ public class PowerBlock {
     private @NotNull Component name;
     @Getter
     private @NotNull Location blockLocation;
+    private @Nullable Block blockInstance;
+    /**
+     * Material restored when power block is activated, null keeps block as it is
+     */
     @Getter
-    private @NotNull Block blockInstance;
+    private @Nullable Material material;
+    private boolean active = false;
 
     @Getter
     private BlockMemory blockMemory = new BlockMemory();
 
     @Getter
-    private final Map<Integer, List<String>> positionRewards = new HashMap<>();
+    private final Map<Integer, List<RewardCommand>> positionRewards = new HashMap<>();
+
+    /**
+     * @return Block of power block, resolving block does not load its chunk
+     */
+    public @NotNull Block getBlockInstance() {
+        if (this.blockInstance == null)
+            this.blockInstance = this.blockLocation.getWorld().getBlockAt(this.blockLocation.getBlockX(), this.blockLocation.getBlockY(), this.blockLocation.getBlockZ());
+        return this.blockInstance;
+    }
+
+    /**
+     * @return Boolean true if power block was activated, else false.
+     */
+    public boolean isActive() {
+        return this.active;
+    }
+
+    /**
+     * Activates power block, restores its material. Must be called only when chunk of power block is loaded.
+     *
+     * @return Boolean true if power block was dormant, else false.
+     */
+    public boolean activate() {
+        if (this.active)
+            return false;
+        this.active = true;
+
+        final Block block = getBlockInstance();
+        if (this.material != null && block.getType() != this.material)
+            block.setType(this.material);
+        return true;
+    }
 
     /**
      * Decrements block's health points value
@@ -46,7 +87,7 @@ public class PowerBlock {
      * @param damage   Damage dealt
      * @return Decremented health points value
      */
-    public Integer damageBlock(@NotNull UUID attacker, @NotNull Integer damage) {
+    public Integer damageBlock(@NotNull UUID attacker, int damage) {
         return blockMemory.damage(attacker, damage);
     }
 
@@ -64,6 +105,45 @@ public class PowerBlock {
         return this.blockMemory.currentHealthPoints.get();
     }
 
+    /**
+     * @return Version of block memory, changes with every change of health or attackers
+     */
+    public long getVersion() {
+        return this.blockMemory.getVersion();
+    }
+
+    /**
+     * @param attacker Player UUID
+     * @return Rank of attacker starting with 1, 0 if player did not attack this block
+     */
+    public int getAttackerRank(@NotNull UUID attacker) {
+        return this.blockMemory.attackers.rankOf(attacker);
+    }
+
+    /**
+     * @param attacker Player UUID
+     * @return Total damage dealt by attacker
+     */
+    public int getAttackerDamage(@NotNull UUID attacker) {
+        return this.blockMemory.attackers.get(attacker);
+    }
+
+    /**
+     * @param attacker Player UUID
+     * @return Damage attacker needs to catch up with attacker ranked right above him, 0 if he leads
+     */
+    public int getAttackerGap(@NotNull UUID attacker) {
+        return this.blockMemory.attackers.gapOf(attacker);
+    }
+
+    /**
+     * @param count Maximal count of attackers
+     * @return Attackers with highest damage, highest first
+     */
+    public @NotNull List<Map.Entry<UUID, Integer>> getTopAttackers(int count) {
+        return this.blockMemory.getTopAttackers(count);
+    }
+
     /**
      * Resets power block
      */
@@ -78,8 +158,8 @@ public class PowerBlock {
 
     public static @NotNull JsonObject encodeBlockMemory(final @NotNull BlockMemory memory) {
         JsonObject attackers = new JsonObject();
-        memory.attackers.forEach((vandalUUID, damage) -> {
-            attackers.addProperty(vandalUUID.toString(), damage);
+        memory.attackers.forEach((mostSigBits, leastSigBits, damage) -> {
+            attackers.addProperty(new UUID(mostSigBits, leastSigBits).toString(), damage);
         });
         JsonObject root = new JsonObject();
         root.add("attackers", attackers);
@@ -93,7 +173,7 @@ public class PowerBlock {
 
         attackers.entrySet().forEach(entry -> {
             final String vandal = entry.getKey();
-            final Integer damage = entry.getValue().getAsInt();
+            final int damage = entry.getValue().getAsInt();
 
             memory.damage(UUID.fromString(vandal), damage);
         });
@@ -121,7 +201,9 @@ public class PowerBlock {
         private AtomicInteger currentRespawnCount = new AtomicInteger(0);
 
         @Getter
-        private final Map<UUID, Integer> attackers = new ConcurrentHashMap<>();
+        private final AttackerTable attackers = new AttackerTable();
+
+        private final AtomicLong version = new AtomicLong();
 
         /**
          * Decreases current heath points value and registers attacker and his damage
@@ -130,13 +212,25 @@ public class PowerBlock {
          * @param damage Damage dealt by attacker
          * @return Current health points value
          */
-        public int damage(UUID uuid, Integer damage) {
-            this.attackers.compute(uuid, (oldUuid, originDamage) ->
-                    (originDamage != null ? originDamage : 0) + damage
-            );
+        public int damage(UUID uuid, int damage) {
+            this.attackers.add(uuid, damage);
             return decreaseHealth(damage);
         }
 
+        /**
+         * Registers attacker and his damage without decreasing health points,
+         * used for damage which landed together with the hit defeating power block
+         *
+         * @param uuid   Attacker
+         * @param damage Damage dealt by attacker
+         * @return Current health points value
+         */
+        public int credit(UUID uuid, int damage) {
+            this.attackers.add(uuid, damage);
+            this.version.incrementAndGet();
+            return this.currentHealthPoints.get();
+        }
+
         /**
          * Increases current health points
          *
@@ -144,6 +238,7 @@ public class PowerBlock {
          * @return Increased health points value
          */
         public int increaseHealth(int value) {
+            this.version.incrementAndGet();
             return this.currentHealthPoints.addAndGet(value);
         }
 
@@ -154,6 +249,7 @@ public class PowerBlock {
          * @return Decreased health points value
          */
         public int decreaseHealth(int value) {
+            this.version.incrementAndGet();
             return this.currentHealthPoints.addAndGet(-value);
         }
 
@@ -165,9 +261,17 @@ public class PowerBlock {
                 return false;
             this.attackers.clear();
             this.currentHealthPoints = new AtomicInteger(this.maximalHealthPoints);
+            this.version.incrementAndGet();
             return true;
         }
 
+        /**
+         * @return Version of memory, changes with every change of health or attackers
+         */
+        public long getVersion() {
+            return this.version.get();
+        }
+
         /**
          * @return Whether this power block will respawn after it's destroyed
          */
@@ -175,11 +279,19 @@ public class PowerBlock {
             return this.currentRespawnCount.get() > this.maximalRespawnCount;
         }
 
+        /**
+         * @return All attackers, highest damage first
+         */
         public List<Map.Entry<UUID, Integer>> getAttackersSorted() {
-            final List<Map.Entry<UUID, Integer>> attackers = new LinkedList<>(this.getAttackers().entrySet());
-            attackers.sort(Map.Entry.comparingByValue());
-            Collections.reverse(attackers);
-            return attackers;
+            return this.attackers.entries();
+        }
+
+        /**
+         * @param count Maximal count of attackers
+         * @return Attackers with highest damage, highest first
+         */
+        public List<Map.Entry<UUID, Integer>> getTopAttackers(int count) {
+            return this.attackers.top(count);
         }
     }
 
@@ -198,6 +310,7 @@ public class PowerBlock {
         private int respawnCount;
 
         @CodecKey("location.world")
+        @Getter
         private String worldName;
         @CodecKey("location.location.x")
         private int x;
@@ -207,7 +320,7 @@ public class PowerBlock {
         private int z;
 
         @Getter
-        private final Map<Integer, List<String>> rewards = new HashMap<>();
+        private final Map<Integer, List<RewardCommand>> rewards = new HashMap<>();
 
         /**
          * Constructs power block from codec data
@@ -223,10 +336,14 @@ public class PowerBlock {
                 return null;
             }
             final var loc = new Location(world, x, y, z);
-            if (material != null)
-                loc.getWorld().getBlockAt(loc).setType(Material.valueOf(this.material));
-
             final var builder = PowerBlock.builder(id);
+            // material is restored once chunk of power block is loaded
+            if (material != null) {
+                final Material blockMaterial = Material.matchMaterial(this.material);
+                if (blockMaterial == null)
+                    log.error("Invalid material '{}' of power block '{}'", this.material, id);
+                builder.withMaterial(blockMaterial);
+            }
 
             rewards.forEach(builder::withRewardCommand);
 
@@ -239,7 +356,8 @@ public class PowerBlock {
         public void onDecode(@NotNull AuxData source) throws Exception {
             source.getKeys("rewards").forEach((key) -> {
                 List<String> rewardCommands = source.getStringList("rewards." + key);
-                this.rewards.put(Integer.valueOf(key), rewardCommands);
+                // commands are compiled once, rendering does not parse them again
+                this.rewards.put(Integer.valueOf(key), RewardCommand.compileAll(rewardCommands));
             });
 
         }
@@ -259,15 +377,26 @@ public class PowerBlock {
             return this;
         }
 
+        /**
+         * Power block of existing block is active
+         */
         public @NotNull Builder fromBukkitBlock(@NotNull Block block) {
             this.powerBlock.blockInstance = block;
             this.powerBlock.blockLocation = block.getLocation();
+            this.powerBlock.active = true;
             return this;
         }
 
+        /**
+         * Power block of location is dormant until it is activated
+         */
         public @NotNull Builder fromBukkitLocation(@NotNull Location location) {
             this.powerBlock.blockLocation = location;
-            this.powerBlock.blockInstance = location.getBlock();
+            return this;
+        }
+
+        public @NotNull Builder withMaterial(@Nullable Material material) {
+            this.powerBlock.material = material;
             return this;
         }
 
@@ -293,7 +422,7 @@ public class PowerBlock {
         }
 
 
-        public @NotNull Builder withRewardCommand(int index, List<String> commands) {
+        public @NotNull Builder withRewardCommand(int index, List<RewardCommand> commands) {
             this.powerBlock.positionRewards.put(index, commands);
             return this;
         }
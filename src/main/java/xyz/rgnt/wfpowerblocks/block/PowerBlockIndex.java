@@ -0,0 +1,515 @@
+package xyz.rgnt.wfpowerblocks.block;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Index of power blocks by world and block key, and by id.
+ * <p>
+ * Every world has its own slot holding open-addressing map of block keys, so lookups do not box keys
+ * and a miss costs only few array probes. Slot also tracks chunks containing any power block, which allows
+ * listeners to reject blocks far from power blocks before computing block key.
+ * Location lookups are expected on main thread, id lookups are safe from any thread, modifications are synchronized.
+ */
+public class PowerBlockIndex {
+
+    private final Map<UUID, WorldSlot> worlds = new HashMap<>();
+    private final Map<String, PowerBlock> byId = new ConcurrentHashMap<>();
+
+    /**
+     * Last resolved world and its slot
+     */
+    private @Nullable World cachedWorld;
+    private @Nullable WorldSlot cachedSlot;
+
+    private int size = 0;
+
+    /**
+     * @param block Block
+     * @return Power block at specified block or null
+     */
+    public @Nullable PowerBlock get(@NotNull Block block) {
+        final WorldSlot slot = getSlot(block.getWorld());
+        if (slot == null || !slot.containsChunk(block.getX() >> 4, block.getZ() >> 4))
+            return null;
+        return slot.get(block.getBlockKey());
+    }
+
+    /**
+     * Checks chunk filter of world. Cheaper than any lookup, listeners should use it to reject unrelated blocks.
+     *
+     * @param world  World
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return Boolean true if chunk contains any power block, else false.
+     */
+    public boolean mayContain(@NotNull World world, int chunkX, int chunkZ) {
+        final WorldSlot slot = getSlot(world);
+        return slot != null && slot.containsChunk(chunkX, chunkZ);
+    }
+
+    /**
+     * Removes power blocks from list of blocks, for example from block list of explosion.
+     * World slot is resolved once and chunk filter is checked once per run of blocks in the same chunk,
+     * so list of blocks far from power blocks costs no block lookup at all.
+     *
+     * @param world  World of all blocks
+     * @param blocks Mutable list of blocks
+     * @return Power blocks removed from list, in order of list
+     */
+    public @NotNull List<PowerBlock> extract(@NotNull World world, @NotNull List<Block> blocks) {
+        final WorldSlot slot = getSlot(world);
+        if (slot == null)
+            return Collections.emptyList();
+
+        List<PowerBlock> extracted = null;
+        int lastChunkX = 0, lastChunkZ = 0;
+        boolean lastChunkKnown = false, lastChunkContains = false;
+
+        final int size = blocks.size();
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            final Block block = blocks.get(read);
+            final int chunkX = block.getX() >> 4;
+            final int chunkZ = block.getZ() >> 4;
+            if (!lastChunkKnown || chunkX != lastChunkX || chunkZ != lastChunkZ) {
+                lastChunkX = chunkX;
+                lastChunkZ = chunkZ;
+                lastChunkKnown = true;
+                lastChunkContains = slot.containsChunk(chunkX, chunkZ);
+            }
+
+            final PowerBlock powerBlock = lastChunkContains ? slot.get(block.getBlockKey()) : null;
+            if (powerBlock != null) {
+                if (extracted == null)
+                    extracted = new ArrayList<>(2);
+                extracted.add(powerBlock);
+                continue;
+            }
+            if (write != read)
+                blocks.set(write, block);
+            write++;
+        }
+
+        if (extracted == null)
+            return Collections.emptyList();
+        blocks.subList(write, size).clear();
+        return extracted;
+    }
+
+    /**
+     * @param world    World
+     * @param blockKey Block key
+     * @return Power block at specified block or null
+     */
+    public @Nullable PowerBlock get(@NotNull World world, long blockKey) {
+        final WorldSlot slot = getSlot(world);
+        return slot != null ? slot.get(blockKey) : null;
+    }
+
+    /**
+     * @param worldUID World unique id
+     * @param blockKey Block key
+     * @return Power block at specified block or null
+     */
+    public @Nullable PowerBlock get(@NotNull UUID worldUID, long blockKey) {
+        final WorldSlot slot = this.worlds.get(worldUID);
+        return slot != null ? slot.get(blockKey) : null;
+    }
+
+    /**
+     * @param id Id of power block
+     * @return Power block with specified id or null
+     */
+    public @Nullable PowerBlock get(@NotNull String id) {
+        return this.byId.get(id);
+    }
+
+    /**
+     * @return Unmodifiable view of ids of all indexed power blocks
+     */
+    public @NotNull Set<String> ids() {
+        return Collections.unmodifiableSet(this.byId.keySet());
+    }
+
+    /**
+     * Resolves slot of world. Slot of last resolved world is cached.
+     *
+     * @param world World
+     * @return Slot of world or null if world does not contain any power block
+     */
+    public @Nullable WorldSlot getSlot(@NotNull World world) {
+        if (world == this.cachedWorld)
+            return this.cachedSlot;
+
+        final WorldSlot slot = this.worlds.get(world.getUID());
+        this.cachedWorld = world;
+        this.cachedSlot = slot;
+        return slot;
+    }
+
+    /**
+     * Indexes power block by its location and id.
+     * Power block with the same id at other location is removed, so every id maps to exactly one location.
+     *
+     * @param powerBlock Power block
+     * @return Power block previously indexed at the same location or null
+     */
+    public synchronized @Nullable PowerBlock put(@NotNull PowerBlock powerBlock) {
+        final Location loc = powerBlock.getBlockLocation();
+        final UUID worldUID = loc.getWorld().getUID();
+
+        final PowerBlock sameId = this.byId.get(powerBlock.getId());
+        if (sameId != null && sameId != powerBlock) {
+            final Location sameIdLoc = sameId.getBlockLocation();
+            remove(sameIdLoc.getWorld().getUID(), sameIdLoc.toBlockKey());
+        }
+
+        WorldSlot slot = this.worlds.get(worldUID);
+        if (slot == null) {
+            slot = new WorldSlot(worldUID);
+            this.worlds.put(worldUID, slot);
+            invalidateCache();
+        }
+
+        final PowerBlock previous = slot.put(loc.toBlockKey(), powerBlock);
+        if (previous == null) {
+            slot.chunks.increment(chunkKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4));
+            this.size++;
+        } else
+            this.byId.remove(previous.getId(), previous);
+        this.byId.put(powerBlock.getId(), powerBlock);
+        return previous;
+    }
+
+    /**
+     * Removes power block from index
+     *
+     * @param worldUID World unique id
+     * @param blockKey Block key
+     * @return Removed power block or null
+     */
+    public synchronized @Nullable PowerBlock remove(@NotNull UUID worldUID, long blockKey) {
+        final WorldSlot slot = this.worlds.get(worldUID);
+        if (slot == null)
+            return null;
+
+        final PowerBlock removed = slot.remove(blockKey);
+        if (removed == null)
+            return null;
+
+        final Location loc = removed.getBlockLocation();
+        slot.chunks.decrement(chunkKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4));
+        this.byId.remove(removed.getId(), removed);
+
+        this.size--;
+        if (slot.size() == 0) {
+            this.worlds.remove(worldUID);
+            invalidateCache();
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all power blocks of world, cached world is released as well
+     *
+     * @param worldUID World unique id
+     * @return Removed power blocks
+     */
+    public synchronized @NotNull List<PowerBlock> removeWorld(@NotNull UUID worldUID) {
+        final WorldSlot slot = this.worlds.remove(worldUID);
+        invalidateCache();
+        if (slot == null)
+            return Collections.emptyList();
+
+        final List<PowerBlock> removed = new ArrayList<>(slot.size());
+        slot.forEach(removed::add);
+        for (PowerBlock powerBlock : removed)
+            this.byId.remove(powerBlock.getId(), powerBlock);
+        this.size -= removed.size();
+        return removed;
+    }
+
+    /**
+     * @return Count of indexed power blocks
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return Snapshot of all indexed power blocks
+     */
+    public synchronized @NotNull List<PowerBlock> values() {
+        final List<PowerBlock> values = new ArrayList<>(this.size);
+        this.worlds.values().forEach(slot -> slot.forEach(values::add));
+        return values;
+    }
+
+    /**
+     * Iterates over all indexed power blocks
+     *
+     * @param consumer Consumer
+     */
+    public synchronized void forEach(@NotNull Consumer<PowerBlock> consumer) {
+        this.worlds.values().forEach(slot -> slot.forEach(consumer));
+    }
+
+    private void invalidateCache() {
+        this.cachedWorld = null;
+        this.cachedSlot = null;
+    }
+
+    /**
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return Chunk key in the same format as {@link org.bukkit.Chunk#getChunkKey()}
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX & 0xffffffffL | ((long) chunkZ & 0xffffffffL) << 32;
+    }
+
+    static int index(long key, int mask) {
+        // murmur3 finalizer, block and chunk keys are packed coordinates with poor low bits distribution
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    /**
+     * Open-addressing map of block keys to power blocks of single world
+     */
+    public static class WorldSlot {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final UUID worldUID;
+        private final ChunkFilter chunks = new ChunkFilter();
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private PowerBlock[] values = new PowerBlock[INITIAL_CAPACITY];
+        private int mask = INITIAL_CAPACITY - 1;
+        private int size = 0;
+
+        private WorldSlot(@NotNull UUID worldUID) {
+            this.worldUID = worldUID;
+        }
+
+        /**
+         * @return Unique id of world
+         */
+        public @NotNull UUID getWorldUID() {
+            return this.worldUID;
+        }
+
+        /**
+         * @param chunkX Chunk X coordinate
+         * @param chunkZ Chunk Z coordinate
+         * @return Boolean true if chunk contains any power block, else false.
+         */
+        public boolean containsChunk(int chunkX, int chunkZ) {
+            return this.chunks.contains(chunkKey(chunkX, chunkZ));
+        }
+
+        /**
+         * @param blockKey Block key
+         * @return Power block or null
+         */
+        public @Nullable PowerBlock get(long blockKey) {
+            final long[] keys = this.keys;
+            final PowerBlock[] values = this.values;
+            final int mask = this.mask;
+
+            int index = index(blockKey, mask);
+            PowerBlock value;
+            while ((value = values[index]) != null) {
+                if (keys[index] == blockKey)
+                    return value;
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private @Nullable PowerBlock put(long blockKey, @NotNull PowerBlock powerBlock) {
+            int index = index(blockKey, this.mask);
+            PowerBlock value;
+            while ((value = this.values[index]) != null) {
+                if (this.keys[index] == blockKey) {
+                    this.values[index] = powerBlock;
+                    return value;
+                }
+                index = (index + 1) & this.mask;
+            }
+
+            this.keys[index] = blockKey;
+            this.values[index] = powerBlock;
+            // keep load factor under 0.5
+            if (++this.size * 2 > this.values.length)
+                resize(this.values.length * 2);
+            return null;
+        }
+
+        private @Nullable PowerBlock remove(long blockKey) {
+            int index = index(blockKey, this.mask);
+            PowerBlock value;
+            while ((value = this.values[index]) != null) {
+                if (this.keys[index] == blockKey)
+                    break;
+                index = (index + 1) & this.mask;
+            }
+            if (value == null)
+                return null;
+
+            // shift following entries of the cluster back, so probing does not need tombstones
+            int last = index;
+            int next = (index + 1) & this.mask;
+            while (this.values[next] != null) {
+                final int home = index(this.keys[next], this.mask);
+                if (last <= next ? (home <= last || home > next) : (home <= last && home > next)) {
+                    this.keys[last] = this.keys[next];
+                    this.values[last] = this.values[next];
+                    last = next;
+                }
+                next = (next + 1) & this.mask;
+            }
+            this.values[last] = null;
+            this.size--;
+            return value;
+        }
+
+        /**
+         * @return Count of power blocks in world
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Iterates over all power blocks in world
+         *
+         * @param consumer Consumer
+         */
+        public void forEach(@NotNull Consumer<PowerBlock> consumer) {
+            for (PowerBlock value : this.values)
+                if (value != null)
+                    consumer.accept(value);
+        }
+
+        private void resize(int capacity) {
+            final long[] oldKeys = this.keys;
+            final PowerBlock[] oldValues = this.values;
+
+            this.keys = new long[capacity];
+            this.values = new PowerBlock[capacity];
+            this.mask = capacity - 1;
+
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] == null)
+                    continue;
+                int index = index(oldKeys[i], this.mask);
+                while (this.values[index] != null)
+                    index = (index + 1) & this.mask;
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Open-addressing multiset of chunk keys
+     */
+    private static class ChunkFilter {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int mask = INITIAL_CAPACITY - 1;
+        private int size = 0;
+
+        private boolean contains(long chunkKey) {
+            final long[] keys = this.keys;
+            final int[] counts = this.counts;
+            final int mask = this.mask;
+
+            int index = index(chunkKey, mask);
+            while (counts[index] != 0) {
+                if (keys[index] == chunkKey)
+                    return true;
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        private void increment(long chunkKey) {
+            int index = index(chunkKey, this.mask);
+            while (this.counts[index] != 0) {
+                if (this.keys[index] == chunkKey) {
+                    this.counts[index]++;
+                    return;
+                }
+                index = (index + 1) & this.mask;
+            }
+
+            this.keys[index] = chunkKey;
+            this.counts[index] = 1;
+            if (++this.size * 2 > this.counts.length)
+                resize(this.counts.length * 2);
+        }
+
+        private void decrement(long chunkKey) {
+            int index = index(chunkKey, this.mask);
+            while (this.counts[index] != 0) {
+                if (this.keys[index] == chunkKey)
+                    break;
+                index = (index + 1) & this.mask;
+            }
+            if (this.counts[index] == 0 || --this.counts[index] > 0)
+                return;
+
+            // same backward shift as in WorldSlot
+            int last = index;
+            int next = (index + 1) & this.mask;
+            while (this.counts[next] != 0) {
+                final int home = index(this.keys[next], this.mask);
+                if (last <= next ? (home <= last || home > next) : (home <= last && home > next)) {
+                    this.keys[last] = this.keys[next];
+                    this.counts[last] = this.counts[next];
+                    last = next;
+                }
+                next = (next + 1) & this.mask;
+            }
+            this.counts[last] = 0;
+            this.size--;
+        }
+
+        private void resize(int capacity) {
+            final long[] oldKeys = this.keys;
+            final int[] oldCounts = this.counts;
+
+            this.keys = new long[capacity];
+            this.counts = new int[capacity];
+            this.mask = capacity - 1;
+
+            for (int i = 0; i < oldCounts.length; i++) {
+                if (oldCounts[i] == 0)
+                    continue;
+                int index = index(oldKeys[i], this.mask);
+                while (this.counts[index] != 0)
+                    index = (index + 1) & this.mask;
+                this.keys[index] = oldKeys[i];
+                this.counts[index] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package xyz.rgnt.wfpowerblocks.damage;
+
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import xyz.rgnt.wfpowerblocks.PowerBlocksMngr;
+import xyz.rgnt.wfpowerblocks.block.PowerBlock;
+import xyz.rgnt.wfpowerblocks.jfr.PowerBlockDamageEvent;
+import xyz.rgnt.wfpowerblocks.metrics.LatencyHistogram;
+import xyz.rgnt.wfpowerblocks.metrics.MetricsRegistry;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles hits of players and applies their damage once per tick.
+ * <p>
+ * Every player has token bucket refilled with configured count of hits per second, hits over the limit are dropped.
+ * Accepted hits of one player on one block during a tick are summed and applied as single damage update.
+ * Must be used from main thread only.
+ */
+public class DamageAggregator {
+
+    private final Plugin plugin;
+    private final PowerBlocksMngr.Configuration configuration;
+    private final DamageListener listener;
+
+    private final Map<UUID, TokenBucket> buckets = new HashMap<>();
+    private final Map<PowerBlock, Map<UUID, PendingDamage>> pending = new IdentityHashMap<>();
+
+    /**
+     * Count of hits accepted by throttle
+     */
+    @Getter
+    private final LongAdder acceptedHits;
+    /**
+     * Count of hits dropped by throttle
+     */
+    @Getter
+    private final LongAdder droppedHits;
+    /**
+     * Count of accepted hits merged into damage update of previous hit in the same tick
+     */
+    @Getter
+    private final LongAdder coalescedHits;
+
+    private final LatencyHistogram flushLatency;
+
+    private BukkitTask task;
+
+    /**
+     * Default constructor
+     *
+     * @param plugin        Owning plugin
+     * @param configuration Configuration providing throttle settings
+     * @param metrics       Registry of hit counters
+     * @param listener      Listener notified after damage is applied
+     */
+    public DamageAggregator(@NotNull Plugin plugin, @NotNull PowerBlocksMngr.Configuration configuration,
+                            @NotNull MetricsRegistry metrics, @NotNull DamageListener listener) {
+        this.plugin = plugin;
+        this.configuration = configuration;
+        this.listener = listener;
+        this.acceptedHits = metrics.counter("damage.hits.accepted");
+        this.droppedHits = metrics.counter("damage.hits.dropped");
+        this.coalescedHits = metrics.counter("damage.hits.coalesced");
+        this.flushLatency = metrics.histogram("damage.flush");
+    }
+
+    /**
+     * Starts applying damage every tick
+     */
+    public void start() {
+        if (this.task == null)
+            this.task = Bukkit.getScheduler().runTaskTimer(this.plugin, this::flush, 1, 1);
+    }
+
+    /**
+     * Stops applying damage, pending damage is applied immediately
+     */
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+        flush();
+        this.buckets.clear();
+    }
+
+    /**
+     * Registers hit of power block
+     *
+     * @param block  Power block
+     * @param player Attacking player
+     * @param damage Damage of hit
+     * @return Boolean true if hit was accepted, false if it was dropped by throttle.
+     */
+    public boolean hit(@NotNull PowerBlock block, @NotNull Player player, int damage) {
+        final UUID uuid = player.getUniqueId();
+        final double hitsPerSecond = this.configuration.getHitsPerSecond();
+        if (hitsPerSecond > 0) {
+            final TokenBucket bucket = this.buckets.computeIfAbsent(uuid, key -> new TokenBucket(hitsPerSecond));
+            if (!bucket.tryAcquire(hitsPerSecond)) {
+                this.droppedHits.increment();
+                return false;
+            }
+        }
+        this.acceptedHits.increment();
+        add(block, uuid, damage);
+        return true;
+    }
+
+    /**
+     * Registers damage which is not subject to throttle, for example damage of explosion
+     *
+     * @param block    Power block
+     * @param attacker UUID of player to whom damage is attributed
+     * @param damage   Damage
+     */
+    public void damage(@NotNull PowerBlock block, @NotNull UUID attacker, int damage) {
+        add(block, attacker, damage);
+    }
+
+    /**
+     * Forgets throttle state of player
+     *
+     * @param player Player UUID
+     */
+    public void forget(@NotNull UUID player) {
+        this.buckets.remove(player);
+    }
+
+    private void add(@NotNull PowerBlock block, @NotNull UUID attacker, int damage) {
+        final Map<UUID, PendingDamage> blockDamage = this.pending.computeIfAbsent(block, key -> new LinkedHashMap<>());
+        final PendingDamage pendingDamage = blockDamage.get(attacker);
+        if (pendingDamage != null) {
+            pendingDamage.damage += damage;
+            this.coalescedHits.increment();
+        } else
+            blockDamage.put(attacker, new PendingDamage(damage));
+    }
+
+    /**
+     * Applies pending damage immediately
+     */
+    public void flush() {
+        if (this.pending.isEmpty())
+            return;
+        final long start = System.nanoTime();
+
+        // listener may register new hits, for example by effects of defeat
+        final List<Map.Entry<PowerBlock, Map<UUID, PendingDamage>>> blocks = new ArrayList<>(this.pending.entrySet());
+        this.pending.clear();
+
+        for (Map.Entry<PowerBlock, Map<UUID, PendingDamage>> entry : blocks) {
+            final PowerBlock block = entry.getKey();
+            boolean defeated = false;
+            for (Map.Entry<UUID, PendingDamage> damage : entry.getValue().entrySet()) {
+                final PowerBlockDamageEvent event = new PowerBlockDamageEvent();
+                event.begin();
+                // hits landed in the same tick as defeating hit still count for ranking and rewards
+                final int health = defeated
+                        ? block.getBlockMemory().credit(damage.getKey(), damage.getValue().damage)
+                        : block.getBlockMemory().damage(damage.getKey(), damage.getValue().damage);
+                if (event.shouldCommit()) {
+                    event.blockId = block.getId();
+                    event.damage = damage.getValue().damage;
+                    event.health = health;
+                    event.attackerCount = block.getBlockMemory().getAttackers().size();
+                    event.commit();
+                }
+                this.listener.onDamage(block, damage.getKey(), damage.getValue().damage, health);
+                if (health <= 0)
+                    defeated = true;
+            }
+            if (defeated)
+                this.listener.onDefeat(block);
+        }
+        this.flushLatency.recordSince(start);
+    }
+
+    /**
+     * Listener of applied damage
+     */
+    public interface DamageListener {
+        /**
+         * Called for every applied damage, including damage credited after power block was defeated in the same tick
+         *
+         * @param block    Damaged power block
+         * @param attacker Attacker to whom damage was attributed
+         * @param damage   Applied damage
+         * @param health   Health points of power block after damage
+         */
+        void onDamage(@NotNull PowerBlock block, @NotNull UUID attacker, int damage, int health);
+
+        /**
+         * Called once after all damage of tick is applied to defeated power block
+         *
+         * @param block Defeated power block
+         */
+        void onDefeat(@NotNull PowerBlock block);
+    }
+
+    /**
+     * Damage of single player during current tick
+     */
+    private static class PendingDamage {
+        private int damage;
+
+        private PendingDamage(int damage) {
+            this.damage = damage;
+        }
+    }
+
+    /**
+     * Token bucket of single player, capacity equals count of hits per second
+     */
+    private static class TokenBucket {
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private TokenBucket(double capacity) {
+            this.tokens = capacity;
+        }
+
+        private boolean tryAcquire(double hitsPerSecond) {
+            final long now = System.nanoTime();
+            this.tokens = Math.min(hitsPerSecond, this.tokens + (now - this.lastRefill) * hitsPerSecond / 1_000_000_000d);
+            this.lastRefill = now;
+            if (this.tokens < 1)
+                return false;
+            this.tokens--;
+            return true;
+        }
+    }
+}
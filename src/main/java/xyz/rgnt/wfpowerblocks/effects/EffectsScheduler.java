@@ -0,0 +1,251 @@
+package xyz.rgnt.wfpowerblocks.effects;
+
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import xyz.rgnt.wfpowerblocks.PowerBlocksMngr;
+import xyz.rgnt.wfpowerblocks.block.PowerBlock;
+import xyz.rgnt.wfpowerblocks.providers.data.codecs.EffectsCodec;
+import xyz.rgnt.wfpowerblocks.providers.data.codecs.ParticleCodec;
+import xyz.rgnt.wfpowerblocks.providers.data.codecs.SoundCodec;
+
+import java.util.*;
+
+/**
+ * Coalesces effects of power blocks and plays them once per tick.
+ * <p>
+ * Hits of single block during one tick result in one particle burst scaled by count of hits and capped,
+ * break sound is played to every player at most once per configured interval.
+ * Respawn and defeat effects are played with the next flush as well.
+ * <p>
+ * Effects are sent only to audience of power block, players within configured radius. Audience is computed
+ * when block plays effects and reused until it expires, so hits never scan players of world.
+ * Particles are not sent to players hiding them. Must be used from main thread only.
+ */
+public class EffectsScheduler {
+
+    /**
+     * Interval of removing expired sound cooldowns
+     */
+    private static final int PRUNE_INTERVAL_TICKS = 20 * 60;
+
+    private final Plugin plugin;
+    private final PowerBlocksMngr.Configuration configuration;
+    @Getter
+    private final ParticlePreferences particlePreferences = new ParticlePreferences();
+
+    private final Map<PowerBlock, PendingHits> pendingHits = new IdentityHashMap<>();
+    private final List<PendingOutcome> pendingOutcomes = new ArrayList<>();
+    private final Map<UUID, Long> lastSoundTicks = new HashMap<>();
+    private final Map<PowerBlock, Audience> audiences = new IdentityHashMap<>();
+
+    private long currentTick = 0;
+    private BukkitTask task;
+
+    /**
+     * Default constructor
+     *
+     * @param plugin        Owning plugin
+     * @param configuration Configuration providing effects and their settings
+     */
+    public EffectsScheduler(@NotNull Plugin plugin, @NotNull PowerBlocksMngr.Configuration configuration) {
+        this.plugin = plugin;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Starts flushing effects every tick
+     */
+    public void start() {
+        if (this.task == null)
+            this.task = Bukkit.getScheduler().runTaskTimer(this.plugin, this::flush, 1, 1);
+    }
+
+    /**
+     * Stops flushing effects and drops pending ones
+     */
+    public void stop() {
+        if (this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+        this.pendingHits.clear();
+        this.pendingOutcomes.clear();
+        this.lastSoundTicks.clear();
+        this.audiences.clear();
+    }
+
+    /**
+     * Registers hit of power block
+     *
+     * @param block  Power block
+     * @param player Attacking player
+     */
+    public void hit(@NotNull PowerBlock block, @NotNull Player player) {
+        this.pendingHits.computeIfAbsent(block, key -> new PendingHits()).hit(player);
+    }
+
+    /**
+     * Registers defeat of power block
+     *
+     * @param block    Power block
+     * @param respawns Whether power block respawns, respawn effects are played instead of defeat effects
+     * @param players  Players to play sound to, in addition to audience of power block
+     */
+    public void defeat(@NotNull PowerBlock block, boolean respawns, @NotNull Collection<Player> players) {
+        this.pendingOutcomes.add(new PendingOutcome(block, respawns, new ArrayList<>(players)));
+    }
+
+    /**
+     * Drops pending effects and cached audience of power block, for example when its world is unloaded
+     *
+     * @param block Power block
+     */
+    public void forget(@NotNull PowerBlock block) {
+        this.pendingHits.remove(block);
+        this.pendingOutcomes.removeIf(outcome -> outcome.block == block);
+        this.audiences.remove(block);
+    }
+
+    private void flush() {
+        this.currentTick++;
+        if (!this.pendingHits.isEmpty()) {
+            final ParticleCodec particle = this.configuration.getBreakParticle();
+            final SoundCodec sound = this.configuration.getBreakSound();
+            final int maxParticles = this.configuration.getEffects().getMaxParticleCount();
+            final int soundInterval = this.configuration.getEffects().getSoundIntervalTicks();
+
+            this.pendingHits.forEach((block, hits) -> {
+                final Audience audience = audience(block);
+                final Location location = block.getBlockLocation();
+                // attackers which came closer since audience was computed
+                for (Player player : hits.players) {
+                    if (!audience.listeners.contains(player))
+                        audience.join(player, this.particlePreferences.isVisible(player.getUniqueId()));
+                }
+                if (particle != null) {
+                    final long scaled = (long) particle.getCount() * hits.count;
+                    particle.showTo(audience.viewers, location, (int) Math.min(scaled, maxParticles));
+                }
+                if (sound != null) {
+                    for (Player player : audience.listeners) {
+                        if (acquireSound(player.getUniqueId(), soundInterval))
+                            sound.playTo(player);
+                    }
+                }
+            });
+            this.pendingHits.clear();
+        }
+
+        if (!this.pendingOutcomes.isEmpty()) {
+            for (PendingOutcome outcome : this.pendingOutcomes) {
+                final Audience audience = audience(outcome.block);
+                final Location location = outcome.block.getBlockLocation();
+                final ParticleCodec particle = outcome.respawns
+                        ? this.configuration.getRespawnParticle()
+                        : this.configuration.getDefeatParticle();
+                final SoundCodec sound = outcome.respawns
+                        ? this.configuration.getRespawnSound()
+                        : this.configuration.getDefeatSound();
+
+                if (particle != null)
+                    particle.showTo(audience.viewers, location, particle.getCount());
+                if (sound != null) {
+                    sound.playTo(audience.listeners, location);
+                    for (Player player : outcome.players) {
+                        if (player.isOnline() && !audience.listeners.contains(player))
+                            sound.playTo(player);
+                    }
+                }
+            }
+            this.pendingOutcomes.clear();
+        }
+
+        if (this.currentTick % PRUNE_INTERVAL_TICKS == 0) {
+            final long soundInterval = this.configuration.getEffects().getSoundIntervalTicks();
+            this.lastSoundTicks.values().removeIf(tick -> tick + soundInterval <= this.currentTick);
+            this.audiences.values().removeIf(audience -> audience.expiresAt <= this.currentTick);
+        }
+    }
+
+    /**
+     * @param block Power block
+     * @return Audience of power block, recomputed when expired
+     */
+    private @NotNull Audience audience(@NotNull PowerBlock block) {
+        Audience audience = this.audiences.get(block);
+        if (audience != null && audience.expiresAt > this.currentTick)
+            return audience;
+
+        final EffectsCodec settings = this.configuration.getEffects();
+        final double radiusSquared = settings.getAudienceRadius() * settings.getAudienceRadius();
+        final Location location = block.getBlockLocation();
+
+        audience = new Audience(this.currentTick + Math.max(1, settings.getAudienceRefreshTicks()));
+        for (Player player : location.getWorld().getPlayers()) {
+            if (player.getLocation().distanceSquared(location) <= radiusSquared)
+                audience.join(player, this.particlePreferences.isVisible(player.getUniqueId()));
+        }
+        this.audiences.put(block, audience);
+        return audience;
+    }
+
+    private boolean acquireSound(@NotNull UUID player, int interval) {
+        final Long last = this.lastSoundTicks.get(player);
+        if (last != null && last + interval > this.currentTick)
+            return false;
+        this.lastSoundTicks.put(player, this.currentTick);
+        return true;
+    }
+
+    /**
+     * Hits of single power block during current tick
+     */
+    private static class PendingHits {
+        private final Set<Player> players = new LinkedHashSet<>();
+        private int count = 0;
+
+        private void hit(@NotNull Player player) {
+            this.players.add(player);
+            this.count++;
+        }
+    }
+
+    /**
+     * Players near power block
+     */
+    private static class Audience {
+        private final long expiresAt;
+        private final List<Player> listeners = new ArrayList<>();
+        private final List<Player> viewers = new ArrayList<>();
+
+        private Audience(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        private void join(@NotNull Player player, boolean viewer) {
+            this.listeners.add(player);
+            if (viewer)
+                this.viewers.add(player);
+        }
+    }
+
+    /**
+     * Defeat or respawn of power block waiting for flush
+     */
+    private static class PendingOutcome {
+        private final PowerBlock block;
+        private final boolean respawns;
+        private final List<Player> players;
+
+        private PendingOutcome(@NotNull PowerBlock block, boolean respawns, @NotNull List<Player> players) {
+            this.block = block;
+            this.respawns = respawns;
+            this.players = players;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package xyz.rgnt.wfpowerblocks.effects;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player visibility of power block particles. Particles are visible unless player hides them.
+ */
+public class ParticlePreferences {
+
+    private final Set<UUID> hidden = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param player Player UUID
+     * @return Boolean true if player sees particles, else false.
+     */
+    public boolean isVisible(@NotNull UUID player) {
+        return !this.hidden.contains(player);
+    }
+
+    /**
+     * Toggles visibility of particles
+     *
+     * @param player Player UUID
+     * @return Boolean true if particles are visible after toggle, else false.
+     */
+    public boolean toggle(@NotNull UUID player) {
+        if (this.hidden.remove(player))
+            return true;
+        this.hidden.add(player);
+        return false;
+    }
+
+    /**
+     * Replaces preferences with decoded data
+     *
+     * @param data Encoded preferences or null
+     */
+    public void decode(@Nullable JsonObject data) {
+        this.hidden.clear();
+        if (data == null || !data.has("hidden"))
+            return;
+        for (JsonElement element : data.getAsJsonArray("hidden"))
+            this.hidden.add(UUID.fromString(element.getAsString()));
+    }
+
+    /**
+     * @return Encoded preferences
+     */
+    public @NotNull JsonObject encode() {
+        final JsonArray hidden = new JsonArray();
+        this.hidden.forEach(player -> hidden.add(player.toString()));
+
+        final JsonObject root = new JsonObject();
+        root.add("hidden", hidden);
+        return root;
+    }
+}
@@ -0,0 +1,17 @@
+package xyz.rgnt.wfpowerblocks.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Reload of configuration and re-registration of power blocks
+ */
+@Name("xyz.rgnt.wfpowerblocks.ConfigReload")
+@Label("Configuration Reload")
+@Category({"WarfarePowerBlocks"})
+@Enabled(false)
+@StackTrace(false)
+public class ConfigReloadEvent extends Event {
+
+    @Label("Block Count")
+    public int blockCount;
+}
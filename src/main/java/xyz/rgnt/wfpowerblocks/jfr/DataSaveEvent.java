@@ -0,0 +1,22 @@
+package xyz.rgnt.wfpowerblocks.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Save of all plugin data
+ */
+@Name("xyz.rgnt.wfpowerblocks.Save")
+@Label("Data Save")
+@Category({"WarfarePowerBlocks"})
+@Enabled(false)
+@StackTrace(false)
+public class DataSaveEvent extends Event {
+
+    @Label("Block Count")
+    public int blockCount;
+
+    @Label("Bytes Written")
+    @DataAmount
+    @Description("Bytes written to memory files of power blocks")
+    public long bytesWritten;
+}
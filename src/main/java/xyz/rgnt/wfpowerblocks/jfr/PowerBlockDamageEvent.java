@@ -0,0 +1,27 @@
+package xyz.rgnt.wfpowerblocks.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Damage of single attacker applied to power block, coalesced hits of one tick form one event
+ */
+@Name("xyz.rgnt.wfpowerblocks.Damage")
+@Label("Power Block Damage")
+@Category({"WarfarePowerBlocks"})
+@Enabled(false)
+@StackTrace(false)
+public class PowerBlockDamageEvent extends Event {
+
+    @Label("Block Id")
+    public String blockId;
+
+    @Label("Damage")
+    public int damage;
+
+    @Label("Health")
+    @Description("Health points of power block after damage")
+    public int health;
+
+    @Label("Attacker Count")
+    public int attackerCount;
+}
@@ -0,0 +1,24 @@
+package xyz.rgnt.wfpowerblocks.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Defeat of power block, covers defeat message, rewards and effects
+ */
+@Name("xyz.rgnt.wfpowerblocks.Defeat")
+@Label("Power Block Defeat")
+@Category({"WarfarePowerBlocks"})
+@Enabled(false)
+@StackTrace(false)
+public class PowerBlockDefeatEvent extends Event {
+
+    @Label("Block Id")
+    public String blockId;
+
+    @Label("Attacker Count")
+    public int attackerCount;
+
+    @Label("Rewarded Count")
+    @Description("Count of attackers who received or queued reward")
+    public int rewardedCount;
+}
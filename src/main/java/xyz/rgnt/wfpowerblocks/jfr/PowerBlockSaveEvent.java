@@ -0,0 +1,24 @@
+package xyz.rgnt.wfpowerblocks.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Save of memory of single power block
+ */
+@Name("xyz.rgnt.wfpowerblocks.BlockSave")
+@Label("Power Block Save")
+@Category({"WarfarePowerBlocks"})
+@Enabled(false)
+@StackTrace(false)
+public class PowerBlockSaveEvent extends Event {
+
+    @Label("Block Id")
+    public String blockId;
+
+    @Label("Attacker Count")
+    public int attackerCount;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+}
@@ -0,0 +1,21 @@
+package xyz.rgnt.wfpowerblocks.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Reward commands dispatched during single tick
+ */
+@Name("xyz.rgnt.wfpowerblocks.RewardDispatch")
+@Label("Reward Dispatch")
+@Category({"WarfarePowerBlocks"})
+@Enabled(false)
+@StackTrace(false)
+public class RewardDispatchEvent extends Event {
+
+    @Label("Dispatched Count")
+    public int dispatchedCount;
+
+    @Label("Remaining Count")
+    @Description("Count of commands left in queue for following ticks")
+    public int remainingCount;
+}
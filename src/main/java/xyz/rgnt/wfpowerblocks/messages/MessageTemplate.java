@@ -0,0 +1,96 @@
+package xyz.rgnt.wfpowerblocks.messages;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.Template;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MiniMessage template parsed once into component tree with slots.
+ * <p>
+ * Slots are parsed as marker text components and filled by walking the tree, so message is never parsed again.
+ * Template can be filled partially, for example with values shared by all messages of one power block.
+ */
+public class MessageTemplate {
+
+    /**
+     * Prefix of marker components, private use character does not appear in configured messages
+     */
+    private static final String MARKER = "\uE000";
+
+    private final Component root;
+
+    private MessageTemplate(@NotNull Component root) {
+        this.root = root;
+    }
+
+    /**
+     * Parses MiniMessage template
+     *
+     * @param input MiniMessage template
+     * @param slots Names of slots, slot is written as <code>&lt;name&gt;</code>
+     * @return Parsed template
+     */
+    public static @NotNull MessageTemplate parse(@NotNull String input, @NotNull Collection<String> slots) {
+        final Template[] markers = new Template[slots.size()];
+        int index = 0;
+        for (String slot : slots)
+            markers[index++] = Template.of(slot, Component.text(MARKER + slot));
+        return new MessageTemplate(MiniMessage.markdown().parse(input, markers));
+    }
+
+    /**
+     * Fills some slots, other slots are kept
+     *
+     * @param values Values of slots
+     * @return Partially filled template
+     */
+    public @NotNull MessageTemplate fill(@NotNull Map<String, ? extends Component> values) {
+        return new MessageTemplate(fill(this.root, values, false));
+    }
+
+    /**
+     * Fills slots, slots without value are left empty
+     *
+     * @param values Values of slots
+     * @return Message
+     */
+    public @NotNull Component render(@NotNull Map<String, ? extends Component> values) {
+        return fill(this.root, values, true);
+    }
+
+    private static @NotNull Component fill(@NotNull Component component, @NotNull Map<String, ? extends Component> values, boolean complete) {
+        if (component instanceof TextComponent) {
+            final String content = ((TextComponent) component).content();
+            if (content.startsWith(MARKER)) {
+                Component value = values.get(content.substring(MARKER.length()));
+                if (value == null && complete)
+                    value = Component.empty();
+                if (value != null) {
+                    // value keeps its own style, style of marker applies where value does not specify any
+                    return value.style(value.style().merge(component.style(), Style.Merge.Strategy.IF_ABSENT_ON_TARGET));
+                }
+            }
+        }
+
+        final List<Component> children = component.children();
+        List<Component> filled = null;
+        for (int i = 0; i < children.size(); i++) {
+            final Component child = children.get(i);
+            final Component filledChild = fill(child, values, complete);
+            if (filledChild == child)
+                continue;
+            if (filled == null)
+                filled = new ArrayList<>(children);
+            filled.set(i, filledChild);
+        }
+        return filled == null ? component : component.children(filled);
+    }
+}
@@ -0,0 +1,149 @@
+package xyz.rgnt.wfpowerblocks.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds.
+ * <p>
+ * Buckets are log-linear like in HDR histogram, every power of two is split into {@link #SUB_BUCKETS} buckets,
+ * so any recorded value is reported with relative error under 7 %. Recording never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records latency
+     *
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        this.buckets.incrementAndGet(bucketOf(nanos));
+        this.count.increment();
+        this.sum.add(nanos);
+        this.max.accumulate(nanos);
+    }
+
+    /**
+     * Records latency since specified start
+     *
+     * @param startNanos Value of {@link System#nanoTime()} at start
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return Count of recorded values
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return Snapshot of histogram, values recorded while snapshot is taken may be partially included.
+     */
+    public @NotNull Snapshot snapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, this.sum.sum(), this.max.get());
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Immutable copy of histogram
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(@NotNull long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return Count of recorded values
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return Sum of recorded values in nanoseconds
+         */
+        public long getSum() {
+            return this.sum;
+        }
+
+        /**
+         * @return Maximal recorded value in nanoseconds
+         */
+        public long getMax() {
+            return this.max;
+        }
+
+        /**
+         * @return Mean of recorded values in nanoseconds
+         */
+        public double getMean() {
+            return this.count == 0 ? 0 : (double) this.sum / this.count;
+        }
+
+        /**
+         * @param percentile Percentile between 0 and 100
+         * @return Value at specified percentile in nanoseconds, midpoint of its bucket
+         */
+        public long getPercentile(double percentile) {
+            if (this.count == 0)
+                return 0;
+            final long rank = Math.max(1, (long) Math.ceil(this.count * percentile / 100d));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    final long low = lowestValueOf(i);
+                    final long high = i + 1 < this.counts.length ? lowestValueOf(i + 1) : low;
+                    return Math.min(this.max, low + (high - low) / 2);
+                }
+            }
+            return this.max;
+        }
+    }
+}
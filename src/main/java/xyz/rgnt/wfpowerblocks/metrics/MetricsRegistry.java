@@ -0,0 +1,226 @@
+package xyz.rgnt.wfpowerblocks.metrics;
+
+import lombok.extern.log4j.Log4j2;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import xyz.rgnt.wfpowerblocks.PowerBlocksMngr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of counters, gauges and latency histograms of plugin.
+ * <p>
+ * Counters and histograms are lock-free and safe to update from any thread. Rates are computed over the last
+ * sampling interval of one minute. Report can be periodically appended to file.
+ */
+@Log4j2(topic = "WarfarePowerBlocks - Metrics")
+public class MetricsRegistry {
+
+    private static final long SAMPLE_INTERVAL_TICKS = 60 * 20;
+
+    private final Plugin plugin;
+    private final PowerBlocksMngr.Configuration configuration;
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Totals at last sample and rates per second computed from them
+     */
+    private final Map<String, Long> sampledTotals = new ConcurrentHashMap<>();
+    private final Map<String, Double> rates = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+    private volatile long lastSampleNanos = this.startNanos;
+
+    private BukkitTask sampleTask;
+    private BukkitTask dumpTask;
+
+    /**
+     * Default constructor
+     *
+     * @param plugin        Owning plugin
+     * @param configuration Configuration providing dump settings
+     */
+    public MetricsRegistry(@NotNull Plugin plugin, @NotNull PowerBlocksMngr.Configuration configuration) {
+        this.plugin = plugin;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Starts sampling of rates and periodic dump if configured
+     */
+    public void start() {
+        if (this.sampleTask == null)
+            this.sampleTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this.plugin, this::sample, SAMPLE_INTERVAL_TICKS, SAMPLE_INTERVAL_TICKS);
+
+        final long dumpInterval = this.configuration.getMetricsDumpInterval() * 60L * 20L;
+        if (this.dumpTask == null && dumpInterval > 0)
+            this.dumpTask = Bukkit.getScheduler().runTaskTimer(this.plugin, this::dump, dumpInterval, dumpInterval);
+    }
+
+    /**
+     * Stops sampling and dump
+     */
+    public void stop() {
+        if (this.sampleTask != null) {
+            this.sampleTask.cancel();
+            this.sampleTask = null;
+        }
+        if (this.dumpTask != null) {
+            this.dumpTask.cancel();
+            this.dumpTask = null;
+        }
+    }
+
+    /**
+     * @param name Name of counter
+     * @return Counter with specified name, created if absent
+     */
+    public @NotNull LongAdder counter(@NotNull String name) {
+        return this.counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * @param name Name of histogram
+     * @return Histogram with specified name, created if absent
+     */
+    public @NotNull LatencyHistogram histogram(@NotNull String name) {
+        return this.histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers gauge, supplier must be safe to call from any thread
+     *
+     * @param name     Name of gauge
+     * @param supplier Supplier of current value
+     */
+    public void gauge(@NotNull String name, @NotNull LongSupplier supplier) {
+        this.gauges.put(name, supplier);
+    }
+
+    /**
+     * Iterates over counters in order of their names
+     *
+     * @param consumer Consumer of name and counter
+     */
+    public void forEachCounter(@NotNull BiConsumer<String, LongAdder> consumer) {
+        this.counters.forEach(consumer);
+    }
+
+    /**
+     * Iterates over histograms in order of their names
+     *
+     * @param consumer Consumer of name and histogram
+     */
+    public void forEachHistogram(@NotNull BiConsumer<String, LatencyHistogram> consumer) {
+        this.histograms.forEach(consumer);
+    }
+
+    /**
+     * Iterates over gauges in order of their names
+     *
+     * @param consumer Consumer of name and current value
+     */
+    public void forEachGauge(@NotNull BiConsumer<String, Long> consumer) {
+        this.gauges.forEach((name, gauge) -> consumer.accept(name, gauge.getAsLong()));
+    }
+
+    /**
+     * @return Human readable report, one metric per line
+     */
+    public @NotNull List<String> report() {
+        final List<String> lines = new ArrayList<>();
+        this.histograms.forEach((name, histogram) -> {
+            final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            lines.add(String.format(Locale.ROOT, "%s: count=%d (%.2f/s) p50=%s p99=%s max=%s mean=%s",
+                    name, snapshot.getCount(), rateOf(name, snapshot.getCount()),
+                    formatNanos(snapshot.getPercentile(50)), formatNanos(snapshot.getPercentile(99)),
+                    formatNanos(snapshot.getMax()), formatNanos((long) snapshot.getMean())));
+        });
+        this.counters.forEach((name, counter) -> {
+            final long total = counter.sum();
+            lines.add(String.format(Locale.ROOT, "%s: %d (%.2f/s)", name, total, rateOf(name, total)));
+        });
+        this.gauges.forEach((name, gauge) -> lines.add(name + ": " + gauge.getAsLong()));
+        return lines;
+    }
+
+    /**
+     * Computes rates over elapsed sampling interval
+     */
+    private void sample() {
+        final long now = System.nanoTime();
+        final double seconds = (now - this.lastSampleNanos) / 1_000_000_000d;
+        if (seconds <= 0)
+            return;
+
+        this.histograms.forEach((name, histogram) -> updateRate(name, histogram.getCount(), seconds));
+        this.counters.forEach((name, counter) -> updateRate(name, counter.sum(), seconds));
+        this.lastSampleNanos = now;
+    }
+
+    private void updateRate(@NotNull String name, long total, double seconds) {
+        final Long previous = this.sampledTotals.put(name, total);
+        this.rates.put(name, (total - (previous != null ? previous : 0)) / seconds);
+    }
+
+    /**
+     * @return Rate over last sampling interval, or rate since start before first sample
+     */
+    private double rateOf(@NotNull String name, long total) {
+        final Double rate = this.rates.get(name);
+        if (rate != null)
+            return rate;
+        final double seconds = (System.nanoTime() - this.startNanos) / 1_000_000_000d;
+        return seconds > 0 ? total / seconds : 0;
+    }
+
+    /**
+     * Appends report to dump file. Report is built on main thread, because gauges may read main thread state,
+     * and written asynchronously.
+     */
+    private void dump() {
+        final List<String> lines = new ArrayList<>();
+        lines.add("# " + Instant.now());
+        lines.addAll(report());
+        lines.add("");
+
+        final File file = new File(this.plugin.getDataFolder(), this.configuration.getMetricsDumpFile());
+        Bukkit.getScheduler().runTaskAsynchronously(this.plugin, () -> {
+            try {
+                Files.write(file.toPath(), lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.error("Couldn't write metrics to file '{}'", file, e);
+            }
+        });
+    }
+
+    /**
+     * @param nanos Duration in nanoseconds
+     * @return Duration with most fitting unit
+     */
+    public static @NotNull String formatNanos(long nanos) {
+        if (nanos < 1_000)
+            return nanos + "ns";
+        if (nanos < 1_000_000)
+            return String.format(Locale.ROOT, "%.1fus", nanos / 1_000d);
+        if (nanos < 1_000_000_000)
+            return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000d);
+        return String.format(Locale.ROOT, "%.2fs", nanos / 1_000_000_000d);
+    }
+}
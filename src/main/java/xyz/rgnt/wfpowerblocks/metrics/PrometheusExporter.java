@@ -0,0 +1,210 @@
+package xyz.rgnt.wfpowerblocks.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.log4j.Log4j2;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.rgnt.wfpowerblocks.PowerBlocksMngr;
+import xyz.rgnt.wfpowerblocks.block.PowerBlock;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Exposes metrics in Prometheus text format over HTTP.
+ * <p>
+ * Page is rendered on main thread every second and published to volatile field, so scrapes only copy bytes
+ * and never touch Bukkit objects. Server is bound to configured address, which should stay local.
+ */
+@Log4j2(topic = "WarfarePowerBlocks - Metrics")
+public class PrometheusExporter {
+
+    private static final long RENDER_INTERVAL_TICKS = 20;
+    private static final String PREFIX = "wfpowerblocks_";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Plugin plugin;
+    private final PowerBlocksMngr manager;
+
+    private volatile byte[] page = new byte[0];
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private BukkitTask renderTask;
+
+    /**
+     * Default constructor
+     *
+     * @param plugin  Owning plugin
+     * @param manager Manager providing power blocks, configuration and metrics
+     */
+    public PrometheusExporter(@NotNull Plugin plugin, @NotNull PowerBlocksMngr manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+    }
+
+    /**
+     * Starts server if exporter is enabled in configuration
+     */
+    public void start() {
+        final PowerBlocksMngr.Configuration configuration = this.manager.getConfiguration();
+        if (!configuration.isPrometheusEnabled() || this.server != null)
+            return;
+
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(configuration.getPrometheusHost(), configuration.getPrometheusPort()), 0);
+        } catch (IOException e) {
+            log.error("Couldn't bind metrics exporter to {}:{}", configuration.getPrometheusHost(), configuration.getPrometheusPort(), e);
+            return;
+        }
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "WarfarePowerBlocks - Metrics Exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/metrics", this::handle);
+
+        render();
+        this.renderTask = Bukkit.getScheduler().runTaskTimer(this.plugin, this::render, RENDER_INTERVAL_TICKS, RENDER_INTERVAL_TICKS);
+        this.server.start();
+        log.info("Metrics exporter listening on {}:{}.", configuration.getPrometheusHost(), configuration.getPrometheusPort());
+    }
+
+    /**
+     * Stops server
+     */
+    public void stop() {
+        if (this.renderTask != null) {
+            this.renderTask.cancel();
+            this.renderTask = null;
+        }
+        if (this.server != null) {
+            this.server.stop(0);
+            this.server = null;
+        }
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            final byte[] body = this.page;
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders page on main thread
+     */
+    private void render() {
+        final StringBuilder builder = new StringBuilder(4096);
+
+        final List<PowerBlock> blocks = this.manager.getPowerBlocks();
+        header(builder, "block_health", "gauge", "Current health points of power block");
+        for (PowerBlock block : blocks)
+            sample(builder, "block_health", block.getId(), block.getCurrentHealthPoints());
+        header(builder, "block_max_health", "gauge", "Maximal health points of power block");
+        for (PowerBlock block : blocks)
+            sample(builder, "block_max_health", block.getId(), block.getMaximalHealthPoints());
+        header(builder, "block_attackers", "gauge", "Count of attackers of power block");
+        for (PowerBlock block : blocks)
+            sample(builder, "block_attackers", block.getId(), block.getBlockMemory().getAttackers().size());
+
+        final MetricsRegistry metrics = this.manager.getMetrics();
+        metrics.forEachGauge((name, value) -> {
+            final String metric = metricName(name);
+            header(builder, metric, "gauge", null);
+            builder.append(PREFIX).append(metric).append(' ').append(value).append('\n');
+        });
+        metrics.forEachCounter((name, counter) -> {
+            final String metric = metricName(name) + "_total";
+            header(builder, metric, "counter", null);
+            builder.append(PREFIX).append(metric).append(' ').append(counter.sum()).append('\n');
+        });
+        metrics.forEachHistogram((name, histogram) -> {
+            final String metric = metricName(name) + "_seconds";
+            final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            header(builder, metric, "summary", null);
+            quantile(builder, metric, "0.5", snapshot.getPercentile(50));
+            quantile(builder, metric, "0.99", snapshot.getPercentile(99));
+            quantile(builder, metric, "1", snapshot.getMax());
+            builder.append(PREFIX).append(metric).append("_sum ").append(seconds(snapshot.getSum())).append('\n');
+            builder.append(PREFIX).append(metric).append("_count ").append(snapshot.getCount()).append('\n');
+        });
+
+        this.page = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void header(@NotNull StringBuilder builder, @NotNull String metric, @NotNull String type, @Nullable String help) {
+        if (help != null)
+            builder.append("# HELP ").append(PREFIX).append(metric).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(PREFIX).append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(@NotNull StringBuilder builder, @NotNull String metric, @NotNull String id, long value) {
+        builder.append(PREFIX).append(metric).append("{id=\"");
+        escapeLabel(builder, id);
+        builder.append("\"} ").append(value).append('\n');
+    }
+
+    private static void quantile(@NotNull StringBuilder builder, @NotNull String metric, @NotNull String quantile, long nanos) {
+        builder.append(PREFIX).append(metric).append("{quantile=\"").append(quantile).append("\"} ")
+                .append(seconds(nanos)).append('\n');
+    }
+
+    private static @NotNull String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1_000_000_000d);
+    }
+
+    /**
+     * @param name Name of registry metric, for example <code>block.destroy</code>
+     * @return Prometheus metric name without prefix
+     */
+    private static @NotNull String metricName(@NotNull String name) {
+        final StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            builder.append(Character.isLetterOrDigit(c) && c < 128 ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    private static void escapeLabel(@NotNull StringBuilder builder, @NotNull String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"')
+                builder.append('\\').append(c);
+            else if (c == '\n')
+                builder.append("\\n");
+            else
+                builder.append(c);
+        }
+    }
+}
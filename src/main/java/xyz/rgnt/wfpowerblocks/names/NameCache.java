@@ -0,0 +1,164 @@
+package xyz.rgnt.wfpowerblocks.names;
+
+import com.google.gson.JsonObject;
+import lombok.extern.log4j.Log4j2;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.rgnt.wfpowerblocks.block.PowerBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of player names.
+ * <p>
+ * Names are remembered when players join or quit. Names of other players are resolved asynchronously
+ * with {@link #prefetch(Iterable)}, so lookups never touch disk or profile services. Safe from any thread.
+ */
+@Log4j2(topic = "WarfarePowerBlocks - Names")
+public class NameCache {
+
+    private static final long BLOCK_PREFETCH_INTERVAL_MS = 1000;
+    /**
+     * Player without known name is not resolved again sooner, protects against resolving on every placeholder request
+     */
+    private static final long UNRESOLVED_RETRY_MS = 60_000;
+
+    private final Plugin plugin;
+
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+    private final Set<UUID> resolving = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> lastBlockPrefetch = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> unresolved = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor
+     *
+     * @param plugin Owning plugin
+     */
+    public NameCache(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Remembers name of player
+     *
+     * @param player Player
+     */
+    public void remember(@NotNull Player player) {
+        this.names.put(player.getUniqueId(), player.getName());
+    }
+
+    /**
+     * @param player Player UUID
+     * @return Cached name of player or null, never blocks
+     */
+    public @Nullable String getName(@NotNull UUID player) {
+        return this.names.get(player);
+    }
+
+    /**
+     * @param player Player UUID
+     * @return Cached name of player or null, name which is not cached is resolved asynchronously
+     */
+    public @Nullable String getNameOrPrefetch(@NotNull UUID player) {
+        final String name = this.names.get(player);
+        if (name == null)
+            prefetch(List.of(player));
+        return name;
+    }
+
+    /**
+     * @param player Player UUID
+     * @return Cached name of player or name of online player, UUID if name is not known
+     */
+    public @NotNull String getNameOrId(@NotNull UUID player) {
+        final String name = this.names.get(player);
+        if (name != null)
+            return name;
+        final Player online = Bukkit.getPlayer(player);
+        if (online != null) {
+            remember(online);
+            return online.getName();
+        }
+        return player.toString();
+    }
+
+    /**
+     * Resolves names of players missing in cache asynchronously
+     *
+     * @param players Players UUIDs
+     */
+    public void prefetch(@NotNull Iterable<UUID> players) {
+        final long now = System.currentTimeMillis();
+        for (UUID player : players) {
+            if (this.names.containsKey(player))
+                continue;
+            final Long failed = this.unresolved.get(player);
+            if (failed != null && now - failed < UNRESOLVED_RETRY_MS)
+                continue;
+            if (!this.resolving.add(player))
+                continue;
+            Bukkit.getScheduler().runTaskAsynchronously(this.plugin, () -> {
+                try {
+                    final String name = Bukkit.getOfflinePlayer(player).getName();
+                    if (name != null) {
+                        this.names.put(player, name);
+                        this.unresolved.remove(player);
+                    } else
+                        this.unresolved.put(player, System.currentTimeMillis());
+                } catch (Exception x) {
+                    log.warn("Couldn't resolve name of player '{}'", player, x);
+                } finally {
+                    this.resolving.remove(player);
+                }
+            });
+        }
+    }
+
+    /**
+     * Resolves names of top attackers of power block asynchronously, at most once per second for every block
+     *
+     * @param block Power block
+     * @param count Count of top attackers
+     */
+    public void prefetchTop(@NotNull PowerBlock block, int count) {
+        final long now = System.currentTimeMillis();
+        final Long last = this.lastBlockPrefetch.get(block.getId());
+        if (last != null && now - last < BLOCK_PREFETCH_INTERVAL_MS)
+            return;
+        this.lastBlockPrefetch.put(block.getId(), now);
+
+        final List<UUID> attackers = new ArrayList<>(count);
+        block.getBlockMemory().getAttackers().forEachTop(count, (most, least, damage) -> attackers.add(new UUID(most, least)));
+        prefetch(attackers);
+    }
+
+    /**
+     * Replaces cached names with decoded data
+     *
+     * @param data Encoded names or null
+     */
+    public void decode(@Nullable JsonObject data) {
+        this.names.clear();
+        if (data == null)
+            return;
+        data.entrySet().forEach(entry -> this.names.put(UUID.fromString(entry.getKey()), entry.getValue().getAsString()));
+    }
+
+    /**
+     * @return Encoded names
+     */
+    public @NotNull JsonObject encode() {
+        final JsonObject data = new JsonObject();
+        this.names.forEach((player, name) -> data.addProperty(player.toString(), name));
+        return data;
+    }
+}
@@ -0,0 +1,245 @@
+package xyz.rgnt.wfpowerblocks.placeholders;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.rgnt.wfpowerblocks.block.PowerBlock;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Resolves placeholders of power blocks.
+ * <p>
+ * Every distinct params string is parsed only once into a resolver. Resolvers of block values
+ * cache rendered value until version of power block changes, values which are not known yet are not cached.
+ * Values of requesting player are looked up in ranking of attackers on every request.
+ * Supported params are <code>&lt;id&gt;_&lt;type&gt;</code>, where type is one of
+ * <code>maxHealth</code>, <code>currentHealth</code>, <code>respawnCount</code>, <code>percentage</code>,
+ * <code>top&lt;N&gt;Name</code>, <code>top&lt;N&gt;Damage</code> and player values
+ * <code>rank</code>, <code>damage</code> and <code>gap</code>.
+ */
+public class PlaceholderEngine {
+
+    /**
+     * Value of invalid placeholder
+     */
+    public static final String INVALID = "NaN";
+
+    /**
+     * Maximal count of cached resolvers, protects against unbounded growth with arbitrary params
+     */
+    private static final int MAX_RESOLVERS = 4096;
+
+    private static final Resolver INVALID_RESOLVER = player -> INVALID;
+
+    private final Map<String, Resolver> resolvers = new ConcurrentHashMap<>();
+    private final Function<String, PowerBlock> powerBlockLookup;
+    private final Function<UUID, String> nameLookup;
+
+    /**
+     * Default constructor
+     *
+     * @param powerBlockLookup Lookup of power block by id
+     * @param nameLookup       Non-blocking lookup of player name, returns null and starts resolving unknown players
+     */
+    public PlaceholderEngine(@NotNull Function<String, PowerBlock> powerBlockLookup, @NotNull Function<UUID, String> nameLookup) {
+        this.powerBlockLookup = powerBlockLookup;
+        this.nameLookup = nameLookup;
+    }
+
+    /**
+     * Resolves placeholder
+     *
+     * @param player Player requesting placeholder
+     * @param params Placeholder params
+     * @return Resolved value
+     */
+    public @NotNull String resolve(@Nullable Player player, @NotNull String params) {
+        Resolver resolver = this.resolvers.get(params);
+        if (resolver == null) {
+            resolver = compile(params);
+            if (this.resolvers.size() < MAX_RESOLVERS)
+                this.resolvers.put(params, resolver);
+        }
+        return resolver.resolve(player);
+    }
+
+    private @NotNull Resolver compile(@NotNull String params) {
+        final int idEnd = params.indexOf('_');
+        if (idEnd <= 0)
+            return INVALID_RESOLVER;
+        int typeEnd = params.indexOf('_', idEnd + 1);
+        if (typeEnd < 0)
+            typeEnd = params.length();
+
+        final String id = params.substring(0, idEnd);
+        final String type = params.substring(idEnd + 1, typeEnd);
+
+        final PlayerValue playerValue = compilePlayerValue(type);
+        if (playerValue != null)
+            return new PlayerValueResolver(id, playerValue);
+
+        final BlockValue value = compileBlockValue(type);
+        if (value == null)
+            return INVALID_RESOLVER;
+        return new BlockValueResolver(id, value);
+    }
+
+    private static @Nullable PlayerValue compilePlayerValue(@NotNull String type) {
+        switch (type) {
+            case "rank":
+                return (block, player) -> String.valueOf(block.getAttackerRank(player.getUniqueId()));
+            case "damage":
+                return (block, player) -> String.valueOf(block.getAttackerDamage(player.getUniqueId()));
+            case "gap":
+                return (block, player) -> String.valueOf(block.getAttackerGap(player.getUniqueId()));
+        }
+        return null;
+    }
+
+    private @Nullable BlockValue compileBlockValue(@NotNull String type) {
+        switch (type) {
+            case "maxHealth":
+                return block -> String.valueOf(block.getMaximalHealthPoints());
+            case "currentHealth":
+                return block -> String.valueOf(block.getCurrentHealthPoints());
+            case "respawnCount":
+                return block -> String.valueOf(block.getBlockMemory().getCurrentRespawnCount().get());
+            case "percentage":
+                return block -> {
+                    final int max = block.getMaximalHealthPoints();
+                    return max > 0 ? String.valueOf(Math.max(0, block.getCurrentHealthPoints()) * 100 / max) : "0";
+                };
+        }
+
+        // top<N>Name, top<N>Damage
+        if (type.startsWith("top")) {
+            final boolean name = type.endsWith("Name");
+            final boolean damage = type.endsWith("Damage");
+            if (!name && !damage)
+                return null;
+
+            final int position;
+            try {
+                position = Integer.parseInt(type.substring(3, type.length() - (name ? 4 : 6)));
+            } catch (NumberFormatException x) {
+                return null;
+            }
+            if (position < 1)
+                return null;
+
+            return block -> {
+                final Map.Entry<UUID, Integer> attacker = block.getBlockMemory().getAttackers().atRank(position);
+                if (attacker == null)
+                    return "";
+                if (damage)
+                    return String.valueOf(attacker.getValue());
+                // missing name is resolved by lookup and not cached here, so it shows up once it is resolved
+                return this.nameLookup.apply(attacker.getKey());
+            };
+        }
+        return null;
+    }
+
+    /**
+     * Compiled placeholder
+     */
+    @FunctionalInterface
+    private interface Resolver {
+        @NotNull String resolve(@Nullable Player player);
+    }
+
+    /**
+     * Value of power block, depends only on power block state
+     */
+    @FunctionalInterface
+    private interface BlockValue {
+        /**
+         * @param block Power block
+         * @return Rendered value, or null if value is not known yet
+         */
+        @Nullable String render(@NotNull PowerBlock block);
+    }
+
+    /**
+     * Value of power block specific to requesting player
+     */
+    @FunctionalInterface
+    private interface PlayerValue {
+        @NotNull String render(@NotNull PowerBlock block, @NotNull Player player);
+    }
+
+    /**
+     * Resolver of values specific to requesting player, every render is a lookup in ranking of attackers
+     */
+    private class PlayerValueResolver implements Resolver {
+        private final String id;
+        private final PlayerValue value;
+
+        private PlayerValueResolver(@NotNull String id, @NotNull PlayerValue value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public @NotNull String resolve(@Nullable Player player) {
+            if (player == null)
+                return INVALID;
+            final PowerBlock block = powerBlockLookup.apply(this.id);
+            if (block == null)
+                return INVALID;
+            return this.value.render(block, player);
+        }
+    }
+
+    /**
+     * Resolver caching rendered value of power block until it changes
+     */
+    private class BlockValueResolver implements Resolver {
+        private final String id;
+        private final BlockValue value;
+
+        private volatile @Nullable Rendered rendered;
+
+        private BlockValueResolver(@NotNull String id, @NotNull BlockValue value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public @NotNull String resolve(@Nullable Player player) {
+            final PowerBlock block = powerBlockLookup.apply(this.id);
+            if (block == null)
+                return INVALID;
+
+            final long version = block.getVersion();
+            final Rendered rendered = this.rendered;
+            if (rendered != null && rendered.block == block && rendered.version == version)
+                return rendered.value;
+
+            final String value = this.value.render(block);
+            if (value == null)
+                return "";
+            this.rendered = new Rendered(block, version, value);
+            return value;
+        }
+    }
+
+    /**
+     * Rendered value of power block at specific version
+     */
+    private static class Rendered {
+        private final PowerBlock block;
+        private final long version;
+        private final String value;
+
+        private Rendered(@NotNull PowerBlock block, long version, @NotNull String value) {
+            this.block = block;
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
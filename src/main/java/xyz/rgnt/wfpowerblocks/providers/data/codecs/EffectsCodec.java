@@ -0,0 +1,40 @@
+package xyz.rgnt.wfpowerblocks.providers.data.codecs;
+
+import lombok.Getter;
+import xyz.rgnt.revoken.common.providers.storage.data.codec.ICodec;
+import xyz.rgnt.revoken.common.providers.storage.data.codec.meta.CodecKey;
+
+/**
+ * Settings of effects scheduler
+ */
+public class EffectsCodec implements ICodec {
+
+    /**
+     * Maximal count of particles in single burst of coalesced hits
+     */
+    @CodecKey("max-particle-count")
+    @Getter
+    private int maxParticleCount = 50;
+
+    /**
+     * Minimal count of ticks between two break sounds played to same player
+     */
+    @CodecKey("sound-interval-ticks")
+    @Getter
+    private int soundIntervalTicks = 4;
+
+    /**
+     * Radius around power block in which players receive its effects
+     */
+    @CodecKey("audience-radius")
+    @Getter
+    private double audienceRadius = 32;
+
+    /**
+     * Count of ticks after which players near power block are looked up again
+     */
+    @CodecKey("audience-refresh-ticks")
+    @Getter
+    private int audienceRefreshTicks = 20;
+
+}
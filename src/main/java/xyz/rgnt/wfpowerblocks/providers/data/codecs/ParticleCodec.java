@@ -34,8 +34,33 @@ public class ParticleCodec implements ICodec {
     private Particle bukkitParticle;
 
     public void showTo(@NotNull Player player, @NotNull Location location) {
+        showTo(player, location, getCount());
+    }
+
+    /**
+     * Shows particle only to specified player
+     *
+     * @param player   Player
+     * @param location Location
+     * @param count    Count of particles
+     */
+    public void showTo(@NotNull Player player, @NotNull Location location, int count) {
         if(getBukkitParticle() != null)
-            player.getWorld().spawnParticle(getBukkitParticle(), location, getCount(), getOffsetX(), getOffsetY(), getOffsetZ());
+            player.spawnParticle(getBukkitParticle(), location, count, getOffsetX(), getOffsetY(), getOffsetZ());
+    }
+
+    /**
+     * Shows particle only to specified players
+     *
+     * @param players  Players
+     * @param location Location
+     * @param count    Count of particles
+     */
+    public void showTo(@NotNull Iterable<? extends Player> players, @NotNull Location location, int count) {
+        if(getBukkitParticle() == null)
+            return;
+        for (Player player : players)
+            player.spawnParticle(getBukkitParticle(), location, count, getOffsetX(), getOffsetY(), getOffsetZ());
     }
 
     @Override
@@ -1,6 +1,7 @@
 package xyz.rgnt.wfpowerblocks.providers.data.codecs;
 
 import lombok.Getter;
+import org.bukkit.Location;
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
@@ -28,6 +29,19 @@ public class SoundCodec implements ICodec {
             player.playSound(player.getLocation(), getBukkitSound(), getVolume(), getPitch());
     }
 
+    /**
+     * Plays sound at location only to specified players
+     *
+     * @param players  Players
+     * @param location Location
+     */
+    public void playTo(@NotNull Iterable<? extends Player> players, @NotNull Location location) {
+        if(getBukkitSound() == null)
+            return;
+        for (Player player : players)
+            player.playSound(location, getBukkitSound(), getVolume(), getPitch());
+    }
+
     @Override
     public void onDecode(@NotNull AuxData source) throws Exception {
         try {
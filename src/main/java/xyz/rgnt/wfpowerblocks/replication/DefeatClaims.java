@@ -0,0 +1,184 @@
+package xyz.rgnt.wfpowerblocks.replication;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Claims of defeats of replicated power blocks.
+ * <p>
+ * Node which sees power block defeated claims its defeat for current epoch and announces the claim. Once claim window
+ * passes, defeat is run by claimant with lowest id among claimants which are live, so defeat finished on more nodes
+ * at once is run once. Node is live while its messages keep arriving; when winning claimant goes down before its
+ * respawn or defeat arrives, next claimant takes over. State is not thread safe.
+ */
+public class DefeatClaims {
+
+    private final String nodeId;
+    private final long window;
+    private final long timeout;
+
+    private final Map<String, Long> lastSeen = new HashMap<>();
+    private final Map<String, Claim> claims = new HashMap<>();
+
+    /**
+     * Default constructor
+     *
+     * @param nodeId  Local node id
+     * @param window  Milliseconds for which claims of other nodes are collected before defeat is run
+     * @param timeout Milliseconds after last message of node, after which node is considered down
+     */
+    public DefeatClaims(@NotNull String nodeId, long window, long timeout) {
+        this.nodeId = nodeId;
+        this.window = window;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Records message received from node
+     *
+     * @param node Node id
+     * @param now  Current time in milliseconds
+     */
+    public void seen(@NotNull String node, long now) {
+        this.lastSeen.put(node, now);
+    }
+
+    /**
+     * @param node Node id
+     * @param now  Current time in milliseconds
+     * @return Boolean true if node is local or sent message recently, else false.
+     */
+    public boolean isLive(@NotNull String node, long now) {
+        if (node.equals(this.nodeId))
+            return true;
+        final Long seen = this.lastSeen.get(node);
+        return seen != null && now - seen < this.timeout;
+    }
+
+    /**
+     * Claims defeat of power block by local node
+     *
+     * @param blockId Power block id
+     * @param epoch   Current epoch of power block
+     * @param now     Current time in milliseconds
+     * @return Boolean true if claim is new and must be announced to other nodes, else false.
+     */
+    public boolean claim(@NotNull String blockId, long epoch, long now) {
+        final Claim claim = claim(blockId, epoch);
+        if (claim == null || claim.done || claim.deadline != 0)
+            return false;
+        claim.claimants.add(this.nodeId);
+        claim.deadline = now + this.window;
+        return true;
+    }
+
+    /**
+     * Records claim announced by other node
+     *
+     * @param blockId Power block id
+     * @param epoch   Epoch of claim
+     * @param node    Claiming node
+     */
+    public void claimed(@NotNull String blockId, long epoch, @NotNull String node) {
+        final Claim claim = claim(blockId, epoch);
+        if (claim != null)
+            claim.claimants.add(node);
+    }
+
+    /**
+     * Records defeat run by any node, so it is not run again in same epoch
+     *
+     * @param blockId Power block id
+     * @param epoch   Epoch of defeat
+     */
+    public void done(@NotNull String blockId, long epoch) {
+        final Claim claim = claim(blockId, epoch);
+        if (claim != null)
+            claim.done = true;
+    }
+
+    /**
+     * Decides claims whose window passed. Claims of epochs which already ended are dropped, claims won by other
+     * live node are decided again after next window.
+     *
+     * @param epochs Current epoch of power block by id
+     * @param now    Current time in milliseconds
+     * @return Ids of power blocks whose defeat must be run by local node now
+     */
+    public @NotNull List<String> due(@NotNull ToLongFunction<String> epochs, long now) {
+        List<String> due = null;
+        final Iterator<Map.Entry<String, Claim>> iterator = this.claims.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Claim> entry = iterator.next();
+            final Claim claim = entry.getValue();
+            if (claim.done || claim.deadline == 0 || now < claim.deadline)
+                continue;
+            // other node respawned power block
+            if (claim.epoch != epochs.applyAsLong(entry.getKey())) {
+                iterator.remove();
+                continue;
+            }
+
+            String winner = this.nodeId;
+            for (String claimant : claim.claimants) {
+                if (isLive(claimant, now)) {
+                    winner = claimant;
+                    break;
+                }
+            }
+            if (!winner.equals(this.nodeId)) {
+                claim.deadline = now + this.window;
+                continue;
+            }
+            claim.done = true;
+            if (due == null)
+                due = new ArrayList<>();
+            due.add(entry.getKey());
+        }
+        return due != null ? due : Collections.emptyList();
+    }
+
+    /**
+     * Drops claims and liveness of all nodes
+     */
+    public void clear() {
+        this.claims.clear();
+        this.lastSeen.clear();
+    }
+
+    /**
+     * @return Claim of epoch, null if newer epoch of power block is already claimed
+     */
+    private Claim claim(@NotNull String blockId, long epoch) {
+        Claim claim = this.claims.get(blockId);
+        if (claim != null && claim.epoch > epoch)
+            return null;
+        if (claim == null || claim.epoch < epoch) {
+            claim = new Claim(epoch);
+            this.claims.put(blockId, claim);
+        }
+        return claim;
+    }
+
+    /**
+     * Claims of defeat of power block in single epoch
+     */
+    private static class Claim {
+        private final long epoch;
+        /**
+         * Nodes which claimed defeat, ordered by id
+         */
+        private final SortedSet<String> claimants = new TreeSet<>();
+        /**
+         * Time at which local node decides claim, 0 until local node claims
+         */
+        private long deadline;
+        private boolean done;
+
+        private Claim(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package xyz.rgnt.wfpowerblocks.replication;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport, delivers messages to other transports of the same hub synchronously.
+ * Allows running several nodes in one JVM without any broker.
+ */
+public class LoopbackTransport implements ReplicationTransport {
+
+    /**
+     * Hub shared by all loopback transports of JVM created without explicit hub
+     */
+    public static final Hub SHARED_HUB = new Hub();
+
+    private final Hub hub;
+    private volatile Consumer<byte[]> receiver;
+
+    /**
+     * Creates transport connected to shared hub
+     */
+    public LoopbackTransport() {
+        this(SHARED_HUB);
+    }
+
+    /**
+     * @param hub Hub to which transport is connected
+     */
+    public LoopbackTransport(@NotNull Hub hub) {
+        this.hub = hub;
+        this.hub.transports.add(this);
+    }
+
+    @Override
+    public void send(@NotNull byte[] message) {
+        for (LoopbackTransport transport : this.hub.transports) {
+            final Consumer<byte[]> target = transport.receiver;
+            if (transport != this && target != null)
+                target.accept(message.clone());
+        }
+    }
+
+    @Override
+    public void subscribe(@NotNull Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void close() {
+        this.receiver = null;
+        this.hub.transports.remove(this);
+    }
+
+    /**
+     * Group of connected loopback transports
+     */
+    public static class Hub {
+        private final List<LoopbackTransport> transports = new CopyOnWriteArrayList<>();
+    }
+}
@@ -0,0 +1,257 @@
+package xyz.rgnt.wfpowerblocks.replication;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Replicated counters of power blocks.
+ * <p>
+ * Damage of every attacker is grow-only counter with one slot per node. Merge keeps maximum of every slot,
+ * so it is commutative, associative and idempotent. Every power block has epoch, which is increased by respawn,
+ * counters of older epochs are discarded. State is not thread safe.
+ */
+public class ReplicationState {
+
+    private final Map<String, BlockReplica> replicas = new HashMap<>();
+    /**
+     * Attackers whose slot of local node changed since last drain, by power block id
+     */
+    private final Map<String, Set<UUID>> dirty = new HashMap<>();
+
+    /**
+     * Adds damage to slot of local node
+     *
+     * @param blockId  Power block id
+     * @param node     Local node id
+     * @param attacker Attacker
+     * @param damage   Damage
+     */
+    public void record(@NotNull String blockId, @NotNull String node, @NotNull UUID attacker, int damage) {
+        replica(blockId).slot(node).merge(attacker, damage, Integer::sum);
+        this.dirty.computeIfAbsent(blockId, key -> new HashSet<>()).add(attacker);
+    }
+
+    /**
+     * Merges slot value received from other node
+     *
+     * @param blockId  Power block id
+     * @param epoch    Epoch of value
+     * @param node     Node which owns slot
+     * @param attacker Attacker
+     * @param value    Total damage of attacker in slot
+     * @return Growth of slot, 0 if value is not newer or belongs to other epoch
+     */
+    public int merge(@NotNull String blockId, long epoch, @NotNull String node, @NotNull UUID attacker, int value) {
+        final BlockReplica replica = replica(blockId);
+        if (epoch != replica.epoch)
+            return 0;
+        final Map<UUID, Integer> slot = replica.slot(node);
+        final int previous = slot.getOrDefault(attacker, 0);
+        if (value <= previous)
+            return 0;
+        slot.put(attacker, value);
+        return value - previous;
+    }
+
+    /**
+     * Starts next epoch of power block
+     *
+     * @param blockId Power block id
+     * @return New epoch
+     */
+    public long respawn(@NotNull String blockId) {
+        final BlockReplica replica = replica(blockId);
+        replica.epoch++;
+        replica.nodes.clear();
+        this.dirty.remove(blockId);
+        return replica.epoch;
+    }
+
+    /**
+     * Moves power block to epoch started by other node
+     *
+     * @param blockId Power block id
+     * @param epoch   Epoch
+     * @return Boolean true if epoch is newer and was adopted, else false.
+     */
+    public boolean adopt(@NotNull String blockId, long epoch) {
+        final BlockReplica replica = replica(blockId);
+        if (epoch <= replica.epoch)
+            return false;
+        replica.epoch = epoch;
+        replica.nodes.clear();
+        this.dirty.remove(blockId);
+        return true;
+    }
+
+    /**
+     * @param blockId Power block id
+     * @return Current epoch of power block
+     */
+    public long epoch(@NotNull String blockId) {
+        final BlockReplica replica = this.replicas.get(blockId);
+        return replica != null ? replica.epoch : 0;
+    }
+
+    /**
+     * @param blockId  Power block id
+     * @param node     Node id
+     * @param attacker Attacker
+     * @return Damage of attacker in slot of node
+     */
+    public int slot(@NotNull String blockId, @NotNull String node, @NotNull UUID attacker) {
+        final BlockReplica replica = this.replicas.get(blockId);
+        if (replica == null)
+            return 0;
+        final Map<UUID, Integer> slot = replica.nodes.get(node);
+        return slot != null ? slot.getOrDefault(attacker, 0) : 0;
+    }
+
+    /**
+     * @param blockId  Power block id
+     * @param attacker Attacker
+     * @return Damage of attacker summed over all nodes
+     */
+    public int total(@NotNull String blockId, @NotNull UUID attacker) {
+        final BlockReplica replica = this.replicas.get(blockId);
+        if (replica == null)
+            return 0;
+        int total = 0;
+        for (Map<UUID, Integer> slot : replica.nodes.values())
+            total += slot.getOrDefault(attacker, 0);
+        return total;
+    }
+
+    /**
+     * @param blockId  Power block id
+     * @param attacker Attacker
+     * @return Node whose slot holds most damage of attacker, lowest id of equal slots, null if attacker has no damage
+     */
+    public @Nullable String homeNode(@NotNull String blockId, @NotNull UUID attacker) {
+        final BlockReplica replica = this.replicas.get(blockId);
+        if (replica == null)
+            return null;
+        String home = null;
+        int homeDamage = 0;
+        for (Map.Entry<String, Map<UUID, Integer>> entry : replica.nodes.entrySet()) {
+            final int damage = entry.getValue().getOrDefault(attacker, 0);
+            if (damage > homeDamage || (damage > 0 && damage == homeDamage && entry.getKey().compareTo(home) < 0)) {
+                home = entry.getKey();
+                homeDamage = damage;
+            }
+        }
+        return home;
+    }
+
+    /**
+     * Marks whole slot of local node as changed
+     *
+     * @param node Local node id
+     */
+    public void markAllDirty(@NotNull String node) {
+        this.replicas.forEach((blockId, replica) -> {
+            final Map<UUID, Integer> slot = replica.nodes.get(node);
+            if (slot != null && !slot.isEmpty())
+                this.dirty.computeIfAbsent(blockId, key -> new HashSet<>()).addAll(slot.keySet());
+        });
+    }
+
+    /**
+     * @return Changed attackers by power block id, empty if nothing changed since last drain
+     */
+    public @NotNull Map<String, Set<UUID>> drainDirty() {
+        if (this.dirty.isEmpty())
+            return Collections.emptyMap();
+        final Map<String, Set<UUID>> batch = new HashMap<>(this.dirty);
+        this.dirty.clear();
+        return batch;
+    }
+
+    /**
+     * Replaces state with decoded data
+     *
+     * @param data Encoded state or null
+     */
+    public void decode(@Nullable JsonObject data) {
+        this.replicas.clear();
+        this.dirty.clear();
+        if (data == null || !data.has("blocks"))
+            return;
+        for (Map.Entry<String, JsonElement> blockEntry : data.getAsJsonObject("blocks").entrySet())
+            decode(blockEntry.getKey(), blockEntry.getValue().getAsJsonObject());
+    }
+
+    /**
+     * Replaces counters of power block with decoded data
+     *
+     * @param blockId Power block id
+     * @param data    Encoded counters of power block
+     */
+    public void decode(@NotNull String blockId, @NotNull JsonObject data) {
+        final BlockReplica replica = new BlockReplica();
+        replica.epoch = data.get("epoch").getAsLong();
+        for (Map.Entry<String, JsonElement> nodeEntry : data.getAsJsonObject("nodes").entrySet()) {
+            final Map<UUID, Integer> slot = replica.slot(nodeEntry.getKey());
+            for (Map.Entry<String, JsonElement> attackerEntry : nodeEntry.getValue().getAsJsonObject().entrySet())
+                slot.put(UUID.fromString(attackerEntry.getKey()), attackerEntry.getValue().getAsInt());
+        }
+        this.replicas.put(blockId, replica);
+        this.dirty.remove(blockId);
+    }
+
+    /**
+     * @return Encoded state
+     */
+    public @NotNull JsonObject encode() {
+        final JsonObject blocks = new JsonObject();
+        this.replicas.forEach((blockId, replica) -> blocks.add(blockId, encode(replica)));
+        final JsonObject root = new JsonObject();
+        root.add("blocks", blocks);
+        return root;
+    }
+
+    /**
+     * @param blockId Power block id
+     * @return Encoded counters of power block, empty counters of first epoch if power block has none
+     */
+    public @NotNull JsonObject encode(@NotNull String blockId) {
+        final BlockReplica replica = this.replicas.get(blockId);
+        return encode(replica != null ? replica : new BlockReplica());
+    }
+
+    private static @NotNull JsonObject encode(@NotNull BlockReplica replica) {
+        final JsonObject nodes = new JsonObject();
+        replica.nodes.forEach((node, slot) -> {
+            final JsonObject attackers = new JsonObject();
+            slot.forEach((attacker, damage) -> attackers.addProperty(attacker.toString(), damage));
+            nodes.add(node, attackers);
+        });
+        final JsonObject blockData = new JsonObject();
+        blockData.addProperty("epoch", replica.epoch);
+        blockData.add("nodes", nodes);
+        return blockData;
+    }
+
+    private @NotNull BlockReplica replica(@NotNull String blockId) {
+        return this.replicas.computeIfAbsent(blockId, key -> new BlockReplica());
+    }
+
+    /**
+     * Counters of power block in current epoch
+     */
+    private static class BlockReplica {
+        private long epoch = 0;
+        /**
+         * Damage of attackers by node which dealt it
+         */
+        private final Map<String, Map<UUID, Integer>> nodes = new HashMap<>();
+
+        private @NotNull Map<UUID, Integer> slot(@NotNull String node) {
+            return this.nodes.computeIfAbsent(node, key -> new HashMap<>());
+        }
+    }
+}
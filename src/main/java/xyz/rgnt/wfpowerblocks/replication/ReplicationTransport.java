@@ -0,0 +1,34 @@
+package xyz.rgnt.wfpowerblocks.replication;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport of replication messages between server nodes, for example message broker or proxy channel.
+ * <p>
+ * Transport delivers every message to all other subscribed nodes, message sent by node is not delivered back to it.
+ * Messages may be delivered on any thread. Other plugins can provide their own transport
+ * by registering it in Bukkit services manager.
+ */
+public interface ReplicationTransport {
+
+    /**
+     * Sends message to all other nodes. Called from single replication thread.
+     *
+     * @param message Encoded message
+     */
+    void send(@NotNull byte[] message);
+
+    /**
+     * Subscribes receiver of messages of other nodes
+     *
+     * @param receiver Receiver of encoded messages
+     */
+    void subscribe(@NotNull Consumer<byte[]> receiver);
+
+    /**
+     * Unsubscribes receiver and releases resources of transport
+     */
+    void close();
+}
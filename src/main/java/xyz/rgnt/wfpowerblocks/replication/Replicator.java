@@ -0,0 +1,443 @@
+package xyz.rgnt.wfpowerblocks.replication;
+
+import com.google.gson.JsonObject;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.rgnt.wfpowerblocks.PowerBlocksMngr;
+import xyz.rgnt.wfpowerblocks.block.PowerBlock;
+import xyz.rgnt.wfpowerblocks.rewards.RewardQueue;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Replicates memory of power blocks between server nodes.
+ * <p>
+ * Every node increments only its own slot of {@link ReplicationState} and ships its changed slots in batches.
+ * Receiver merges slots and applies their growth to local memory, so messages can be duplicated, reordered
+ * or repeated by periodic full sync without double counting.
+ * Respawn starts new epoch of power block, counters of older epochs are discarded. Defeat of power block is claimed
+ * by every node which sees it, whether local or received damage finished it, and run by single live claimant,
+ * see {@link DefeatClaims}. Nodes send heartbeats, so claimant which went down is replaced by next one.
+ * Winner ships rewards of attackers to node which holds most of their damage and is live, so rewards of players
+ * who are not on winning node are given or queued on node where they play.
+ * State is touched on main thread only, messages are sent from single replication thread.
+ */
+@Log4j2(topic = "WarfarePowerBlocks - Replication")
+public class Replicator {
+
+    private static final byte MESSAGE_DAMAGE = 1;
+    private static final byte MESSAGE_RESPAWN = 2;
+    private static final byte MESSAGE_HEARTBEAT = 3;
+    private static final byte MESSAGE_CLAIM = 4;
+    private static final byte MESSAGE_DEFEAT = 5;
+
+    private static final long HEARTBEAT_INTERVAL_TICKS = 20;
+    /**
+     * Node which sent nothing for this long is considered down
+     */
+    private static final long NODE_TIMEOUT_MILLIS = 10_000;
+
+    private final Plugin plugin;
+    private final PowerBlocksMngr.Configuration configuration;
+    private final Function<String, PowerBlock> blocks;
+    private final DefeatHandler defeats;
+
+    private final ReplicationState state = new ReplicationState();
+    private final Queue<byte[]> received = new ConcurrentLinkedQueue<>();
+
+    @Getter
+    private String nodeId;
+    private DefeatClaims claims;
+    private ReplicationTransport transport;
+    private ExecutorService sender;
+    private BukkitTask batchTask;
+    private BukkitTask syncTask;
+    private BukkitTask heartbeatTask;
+
+    /**
+     * Default constructor
+     *
+     * @param plugin        Owning plugin
+     * @param configuration Configuration providing replication settings
+     * @param blocks        Lookup of registered power blocks by id
+     * @param defeats       Handler of defeats run by this or other nodes
+     */
+    public Replicator(@NotNull Plugin plugin, @NotNull PowerBlocksMngr.Configuration configuration,
+                      @NotNull Function<String, PowerBlock> blocks, @NotNull DefeatHandler defeats) {
+        this.plugin = plugin;
+        this.configuration = configuration;
+        this.blocks = blocks;
+        this.defeats = defeats;
+    }
+
+    /**
+     * Starts replication over transport
+     *
+     * @param transport Transport
+     */
+    public void start(@NotNull ReplicationTransport transport) {
+        if (this.transport != null)
+            return;
+        this.nodeId = resolveNodeId();
+        this.claims = new DefeatClaims(this.nodeId, Math.max(0, this.configuration.getReplicationClaimWindow()) * 50L, NODE_TIMEOUT_MILLIS);
+        this.transport = transport;
+        this.sender = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "WarfarePowerBlocks - Replication");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transport.subscribe(this.received::add);
+
+        final long batchInterval = Math.max(1, this.configuration.getReplicationBatchInterval());
+        this.batchTask = Bukkit.getScheduler().runTaskTimer(this.plugin, this::tick, batchInterval, batchInterval);
+        final long syncInterval = this.configuration.getReplicationFullSyncInterval();
+        if (syncInterval > 0)
+            this.syncTask = Bukkit.getScheduler().runTaskTimer(this.plugin, this::markAllDirty, 1, syncInterval);
+        this.heartbeatTask = Bukkit.getScheduler().runTaskTimer(this.plugin, this::sendHeartbeat, 1, HEARTBEAT_INTERVAL_TICKS);
+        log.info("Replicating power blocks as node '{}'.", this.nodeId);
+    }
+
+    /**
+     * Ships pending changes and stops replication
+     */
+    public void stop() {
+        if (this.transport == null)
+            return;
+        this.batchTask.cancel();
+        if (this.syncTask != null)
+            this.syncTask.cancel();
+        this.heartbeatTask.cancel();
+        sendBatch();
+
+        final ReplicationTransport transport = this.transport;
+        this.sender.execute(transport::close);
+        this.sender.shutdown();
+        this.transport = null;
+        this.batchTask = null;
+        this.syncTask = null;
+        this.heartbeatTask = null;
+        this.claims = null;
+    }
+
+    /**
+     * @return Boolean true if replication is running, else false.
+     */
+    public boolean isRunning() {
+        return this.transport != null;
+    }
+
+    /**
+     * Records damage applied to power block on this node
+     *
+     * @param block    Power block
+     * @param attacker Attacker
+     * @param damage   Damage
+     */
+    public void recordDamage(@NotNull PowerBlock block, @NotNull UUID attacker, int damage) {
+        if (this.transport == null || damage <= 0)
+            return;
+        this.state.record(block.getId(), this.nodeId, attacker, damage);
+    }
+
+    /**
+     * Records respawn of power block on this node and ships it to other nodes immediately
+     *
+     * @param block Respawned power block
+     */
+    public void recordRespawn(@NotNull PowerBlock block) {
+        if (this.transport == null)
+            return;
+        // damage of old epoch precedes respawn
+        sendBatch();
+
+        final long epoch = this.state.respawn(block.getId());
+        send(MESSAGE_RESPAWN, output -> {
+            output.writeUTF(block.getId());
+            output.writeLong(epoch);
+        });
+    }
+
+    /**
+     * Claims defeat of power block finished on this node. Defeat is run once claim window passes and this node
+     * is live claimant with lowest id. Without replication defeat is run immediately.
+     *
+     * @param block Defeated power block
+     */
+    public void claimDefeat(@NotNull PowerBlock block) {
+        if (this.transport == null) {
+            this.defeats.runDefeat(block);
+            return;
+        }
+        final long epoch = this.state.epoch(block.getId());
+        if (!this.claims.claim(block.getId(), epoch, System.currentTimeMillis()))
+            return;
+        send(MESSAGE_CLAIM, output -> {
+            output.writeUTF(block.getId());
+            output.writeLong(epoch);
+        });
+    }
+
+    /**
+     * Must be called before respawn of power block
+     *
+     * @param block    Defeated power block
+     * @param attacker Rewarded attacker who is not online on this node
+     * @return Live node which holds most damage of attacker, null if attacker is rewarded by this node
+     */
+    public @Nullable String rewardNode(@NotNull PowerBlock block, @NotNull UUID attacker) {
+        if (this.transport == null)
+            return null;
+        final String home = this.state.homeNode(block.getId(), attacker);
+        if (home == null || home.equals(this.nodeId) || !this.claims.isLive(home, System.currentTimeMillis()))
+            return null;
+        return home;
+    }
+
+    /**
+     * Records defeat run by this node and ships rewards of other nodes, must be called before respawn of power block
+     *
+     * @param block   Defeated power block
+     * @param rewards Rewards of attackers by node which gives them
+     */
+    public void recordDefeat(@NotNull PowerBlock block, @NotNull Map<String, List<Map.Entry<UUID, RewardQueue.Reward>>> rewards) {
+        if (this.transport == null)
+            return;
+        final long epoch = this.state.epoch(block.getId());
+        this.claims.done(block.getId(), epoch);
+        send(MESSAGE_DEFEAT, output -> {
+            output.writeUTF(block.getId());
+            output.writeLong(epoch);
+            output.writeInt(rewards.values().stream().mapToInt(List::size).sum());
+            for (Map.Entry<String, List<Map.Entry<UUID, RewardQueue.Reward>>> nodeEntry : rewards.entrySet()) {
+                for (Map.Entry<UUID, RewardQueue.Reward> reward : nodeEntry.getValue()) {
+                    output.writeUTF(nodeEntry.getKey());
+                    output.writeLong(reward.getKey().getMostSignificantBits());
+                    output.writeLong(reward.getKey().getLeastSignificantBits());
+                    output.writeInt(reward.getValue().getRank());
+                    output.writeInt(reward.getValue().getDamage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces replication state with decoded data of replication file written by older versions
+     *
+     * @param data Encoded state or null
+     */
+    public void decode(@Nullable JsonObject data) {
+        this.state.decode(data);
+    }
+
+    /**
+     * Replaces counters of power block with data stored in its memory file
+     *
+     * @param blockId Power block id
+     * @param data    Encoded counters
+     */
+    public void decode(@NotNull String blockId, @NotNull JsonObject data) {
+        this.state.decode(blockId, data);
+    }
+
+    /**
+     * Must be called on main thread together with encoding memory of power block, encoded counters
+     * can be written on any thread
+     *
+     * @param blockId Power block id
+     * @return Encoded counters of power block, must be saved together with its memory
+     */
+    public @NotNull JsonObject encode(@NotNull String blockId) {
+        return this.state.encode(blockId);
+    }
+
+    private void tick() {
+        byte[] message;
+        while ((message = this.received.poll()) != null) {
+            try {
+                receive(message);
+            } catch (IOException | RuntimeException e) {
+                log.error("Couldn't apply replication message", e);
+            }
+        }
+        for (String blockId : this.claims.due(this.state::epoch, System.currentTimeMillis())) {
+            final PowerBlock block = this.blocks.apply(blockId);
+            if (block != null)
+                this.defeats.runDefeat(block);
+        }
+        sendBatch();
+    }
+
+    /**
+     * Marks whole slot of this node as changed, so nodes which missed messages or joined later catch up
+     */
+    private void markAllDirty() {
+        this.state.markAllDirty(this.nodeId);
+    }
+
+    /**
+     * Keeps this node live for other nodes while it has no damage to ship
+     */
+    private void sendHeartbeat() {
+        send(MESSAGE_HEARTBEAT, output -> {});
+    }
+
+    private void sendBatch() {
+        final Map<String, Set<UUID>> batch = this.state.drainDirty();
+        if (batch.isEmpty())
+            return;
+
+        send(MESSAGE_DAMAGE, output -> {
+            output.writeInt(batch.size());
+            for (Map.Entry<String, Set<UUID>> entry : batch.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(this.state.epoch(entry.getKey()));
+                output.writeInt(entry.getValue().size());
+                for (UUID attacker : entry.getValue()) {
+                    output.writeLong(attacker.getMostSignificantBits());
+                    output.writeLong(attacker.getLeastSignificantBits());
+                    output.writeInt(this.state.slot(entry.getKey(), this.nodeId, attacker));
+                }
+            }
+        });
+    }
+
+    private void send(byte type, @NotNull MessageWriter writer) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(type);
+            output.writeUTF(this.nodeId);
+            writer.write(output);
+        } catch (IOException e) {
+            log.error("Couldn't encode replication message", e);
+            return;
+        }
+
+        final ReplicationTransport transport = this.transport;
+        final byte[] message = bytes.toByteArray();
+        this.sender.execute(() -> {
+            try {
+                transport.send(message);
+            } catch (RuntimeException e) {
+                log.error("Couldn't send replication message", e);
+            }
+        });
+    }
+
+    private void receive(@NotNull byte[] message) throws IOException {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(message));
+        final byte type = input.readByte();
+        final String sender = input.readUTF();
+        if (sender.equals(this.nodeId))
+            return;
+        this.claims.seen(sender, System.currentTimeMillis());
+
+        if (type == MESSAGE_CLAIM) {
+            final String blockId = input.readUTF();
+            final long epoch = input.readLong();
+            if (epoch >= this.state.epoch(blockId))
+                this.claims.claimed(blockId, epoch, sender);
+            return;
+        }
+        if (type == MESSAGE_DEFEAT) {
+            receiveDefeat(input);
+            return;
+        }
+        if (type == MESSAGE_RESPAWN) {
+            final String blockId = input.readUTF();
+            final long epoch = input.readLong();
+            final PowerBlock block = this.blocks.apply(blockId);
+            if (block != null && this.state.adopt(blockId, epoch))
+                block.respawn();
+            return;
+        }
+        if (type != MESSAGE_DAMAGE)
+            return;
+
+        final int blockCount = input.readInt();
+        for (int i = 0; i < blockCount; i++) {
+            final String blockId = input.readUTF();
+            final long epoch = input.readLong();
+            final int entryCount = input.readInt();
+            final PowerBlock block = this.blocks.apply(blockId);
+            // damage of newer epoch means that other node respawned block and its respawn was not received yet
+            if (block != null && this.state.adopt(blockId, epoch))
+                block.respawn();
+
+            boolean damaged = false;
+            for (int j = 0; j < entryCount; j++) {
+                final UUID attacker = new UUID(input.readLong(), input.readLong());
+                final int damage = input.readInt();
+                // block which is not registered here, or older epoch, is skipped; full sync delivers it again later
+                if (block == null)
+                    continue;
+                final int growth = this.state.merge(blockId, epoch, sender, attacker, damage);
+                if (growth > 0) {
+                    block.getBlockMemory().damage(attacker, growth);
+                    damaged = true;
+                }
+            }
+            if (damaged && block.getCurrentHealthPoints() <= 0)
+                claimDefeat(block);
+        }
+    }
+
+    private void receiveDefeat(@NotNull DataInputStream input) throws IOException {
+        final String blockId = input.readUTF();
+        final long epoch = input.readLong();
+        final int rewardCount = input.readInt();
+        final List<Map.Entry<UUID, RewardQueue.Reward>> rewards = new ArrayList<>();
+        for (int i = 0; i < rewardCount; i++) {
+            final String node = input.readUTF();
+            final UUID attacker = new UUID(input.readLong(), input.readLong());
+            final int rank = input.readInt();
+            final int damage = input.readInt();
+            if (node.equals(this.nodeId))
+                rewards.add(Map.entry(attacker, new RewardQueue.Reward(blockId, rank, damage)));
+        }
+        this.claims.done(blockId, epoch);
+        this.defeats.presentDefeat(blockId, this.blocks.apply(blockId), rewards);
+    }
+
+    private @NotNull String resolveNodeId() {
+        final String configured = this.configuration.getReplicationNodeId();
+        if (configured != null && !configured.isBlank())
+            return configured;
+        return "node-" + Bukkit.getPort();
+    }
+
+    /**
+     * Handler of defeats of replicated power blocks
+     */
+    public interface DefeatHandler {
+        /**
+         * Runs defeat won by this node, including rewards and respawn
+         *
+         * @param block Defeated power block
+         */
+        void runDefeat(@NotNull PowerBlock block);
+
+        /**
+         * Presents defeat run by other node and gives rewards shipped to this node, respawn follows separately
+         *
+         * @param blockId Power block id
+         * @param block   Power block, null if it is not registered on this node
+         * @param rewards Rewards of attackers given by this node
+         */
+        void presentDefeat(@NotNull String blockId, @Nullable PowerBlock block, @NotNull List<Map.Entry<UUID, RewardQueue.Reward>> rewards);
+    }
+
+    @FunctionalInterface
+    private interface MessageWriter {
+        void write(@NotNull DataOutputStream output) throws IOException;
+    }
+}
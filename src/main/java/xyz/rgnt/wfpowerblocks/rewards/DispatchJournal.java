@@ -0,0 +1,237 @@
+package xyz.rgnt.wfpowerblocks.rewards;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append-only journal of reward commands waiting for dispatch.
+ * <p>
+ * Record of file is <code>[length][op][payload]</code>, where {@link #OP_QUEUE} carries sequence, player, self flag
+ * and command, and {@link #OP_DONE} carries sequences of dispatched commands. Records are encoded by callers with
+ * {@link #queued(Command)} and {@link #done(long[], int)}, so only changes are ever written. Opening the journal
+ * returns pending commands ordered by sequence and rewrites file with them only. Not thread safe.
+ */
+@Log4j2(topic = "WarfarePowerBlocks - Rewards")
+public class DispatchJournal implements Closeable {
+
+    private static final byte OP_QUEUE = 1;
+    private static final byte OP_DONE = 2;
+
+    /**
+     * Size of record header following record length
+     */
+    private static final int HEADER_SIZE = Byte.BYTES;
+
+    private final File file;
+    private FileChannel channel;
+
+    /**
+     * Default constructor
+     *
+     * @param file Journal file
+     */
+    public DispatchJournal(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens journal and rewrites it with pending commands only. Truncated record at the end of file is dropped.
+     *
+     * @return Pending commands ordered by sequence
+     * @throws IOException When file can not be read or written
+     */
+    public @NotNull List<Command> open() throws IOException {
+        if (this.channel != null)
+            throw new IllegalStateException("Journal is already open");
+        Files.createDirectories(this.file.toPath().toAbsolutePath().getParent());
+
+        final List<Command> pending;
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            pending = replay(channel);
+        }
+
+        final File compacted = new File(this.file.getPath() + ".compact");
+        try (FileChannel channel = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Command command : pending)
+                writeFully(channel, queued(command));
+            channel.force(true);
+        }
+        Files.move(compacted.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return pending;
+    }
+
+    /**
+     * @return Boolean true if journal is open, else false.
+     */
+    public boolean isOpen() {
+        return this.channel != null;
+    }
+
+    /**
+     * Appends records and forces them to disk
+     *
+     * @param records Records
+     * @throws IOException When records can not be written
+     */
+    public void write(@NotNull List<ByteBuffer> records) throws IOException {
+        if (records.isEmpty())
+            return;
+        for (ByteBuffer record : records)
+            writeFully(this.channel, record);
+        this.channel.force(false);
+    }
+
+    /**
+     * Drops all records, used once no command is pending
+     *
+     * @throws IOException When file can not be truncated
+     */
+    public void clear() throws IOException {
+        this.channel.truncate(0);
+        this.channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    /**
+     * @param command Queued command
+     * @return Record of queued command
+     */
+    public static @NotNull ByteBuffer queued(@NotNull Command command) {
+        final byte[] text = command.getCommand().getBytes(StandardCharsets.UTF_8);
+        final int length = HEADER_SIZE + Long.BYTES * 3 + Byte.BYTES + Integer.BYTES + text.length;
+        final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length)
+                .put(OP_QUEUE)
+                .putLong(command.getSequence())
+                .putLong(command.getPlayer().getMostSignificantBits())
+                .putLong(command.getPlayer().getLeastSignificantBits())
+                .put((byte) (command.isSelf() ? 1 : 0))
+                .putInt(text.length)
+                .put(text)
+                .flip();
+        return record;
+    }
+
+    /**
+     * @param sequences Sequences of dispatched commands
+     * @param count     Count of valid sequences
+     * @return Record of dispatched commands
+     */
+    public static @NotNull ByteBuffer done(@NotNull long[] sequences, int count) {
+        final int length = HEADER_SIZE + Integer.BYTES + Long.BYTES * count;
+        final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length).put(OP_DONE).putInt(count);
+        for (int i = 0; i < count; i++)
+            record.putLong(sequences[i]);
+        return record.flip();
+    }
+
+    private static @NotNull List<Command> replay(@NotNull FileChannel channel) throws IOException {
+        final Map<Long, Command> pending = new HashMap<>();
+        final long fileSize = channel.size();
+        final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        long offset = 0;
+        while (offset + Integer.BYTES <= fileSize) {
+            length.clear();
+            readFully(channel, length, offset);
+            final int recordLength = length.flip().getInt();
+            if (recordLength < HEADER_SIZE || offset + Integer.BYTES + recordLength > fileSize)
+                break;
+
+            final ByteBuffer record = ByteBuffer.allocate(recordLength);
+            readFully(channel, record, offset + Integer.BYTES);
+            record.flip();
+            try {
+                final byte op = record.get();
+                if (op == OP_QUEUE) {
+                    final long sequence = record.getLong();
+                    final UUID player = new UUID(record.getLong(), record.getLong());
+                    final boolean self = record.get() != 0;
+                    final byte[] text = new byte[record.getInt()];
+                    record.get(text);
+                    pending.put(sequence, new Command(sequence, player, new String(text, StandardCharsets.UTF_8), self));
+                } else if (op == OP_DONE) {
+                    for (int count = record.getInt(); count > 0; count--)
+                        pending.remove(record.getLong());
+                } else
+                    break;
+            } catch (BufferUnderflowException | NegativeArraySizeException x) {
+                break;
+            }
+            offset += Integer.BYTES + recordLength;
+        }
+        if (offset < fileSize)
+            log.warn("Reward dispatch journal is damaged after offset {}, dropping {} bytes.", offset, fileSize - offset);
+
+        final List<Command> commands = new ArrayList<>(pending.values());
+        commands.sort(Comparator.comparingLong(Command::getSequence));
+        return commands;
+    }
+
+    private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new IOException("Unexpected end of reward dispatch journal at " + position);
+            position += read;
+        }
+    }
+
+    private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer record) throws IOException {
+        // record buffers may be shared with other writes, so position of caller's buffer is kept
+        final ByteBuffer buffer = record.duplicate();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Reward command waiting for dispatch
+     */
+    public static class Command {
+        @Getter
+        private final long sequence;
+        @Getter
+        private final UUID player;
+        @Getter
+        private final String command;
+        @Getter
+        private final boolean self;
+
+        /**
+         * @param sequence Order in which command was queued
+         * @param player   Rewarded player
+         * @param command  Rendered command
+         * @param self     Whether command is performed by player
+         */
+        public Command(long sequence, @NotNull UUID player, @NotNull String command, boolean self) {
+            this.sequence = sequence;
+            this.player = player;
+            this.command = command;
+            this.self = self;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package xyz.rgnt.wfpowerblocks.rewards;
+
+import lombok.Getter;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.rgnt.wfpowerblocks.statics.PlaceholderStatics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Reward command compiled into literal segments and slots.
+ * <p>
+ * Supported slots are <code>%player%</code>, <code>%uuid%</code>, <code>%damage%</code>, <code>%rank%</code>
+ * and <code>%pwb_id%</code>, any other <code>%token%</code> is resolved by PlaceholderAPI if present.
+ * Commands starting with <code>@</code> are performed by player, others by console.
+ */
+public class RewardCommand {
+
+    /**
+     * Source of command
+     */
+    @Getter
+    private final String source;
+    /**
+     * Whether command is performed by player
+     */
+    @Getter
+    private final boolean self;
+
+    private final String[] literals;
+    private final Slot[] slots;
+    private final String[] tokens;
+    private final boolean hasPapiSlots;
+    private final int estimatedLength;
+
+    private RewardCommand(@NotNull String source, boolean self, @NotNull List<String> literals,
+                          @NotNull List<Slot> slots, @NotNull List<String> tokens) {
+        this.source = source;
+        this.self = self;
+        this.literals = literals.toArray(new String[0]);
+        this.slots = slots.toArray(new Slot[0]);
+        this.tokens = tokens.toArray(new String[0]);
+        this.hasPapiSlots = slots.contains(Slot.PAPI);
+
+        int length = 0;
+        for (String literal : this.literals)
+            length += literal.length();
+        this.estimatedLength = length + this.slots.length * 16;
+    }
+
+    /**
+     * Compiles reward command
+     *
+     * @param command Command
+     * @return Compiled command
+     */
+    public static @NotNull RewardCommand compile(@NotNull String command) {
+        final boolean self = command.startsWith("@");
+        final String body = self ? command.substring(1) : command;
+
+        final List<String> literals = new ArrayList<>();
+        final List<Slot> slots = new ArrayList<>();
+        final List<String> tokens = new ArrayList<>();
+
+        int literalStart = 0;
+        int index = 0;
+        while (index < body.length()) {
+            final int open = body.indexOf('%', index);
+            if (open < 0)
+                break;
+            final int close = body.indexOf('%', open + 1);
+            if (close < 0)
+                break;
+            // %% or token containing space is not a placeholder, closing % may open next token
+            final String name = body.substring(open + 1, close);
+            if (name.isEmpty() || name.indexOf(' ') >= 0) {
+                index = close;
+                continue;
+            }
+
+            literals.add(body.substring(literalStart, open));
+            slots.add(Slot.of(name));
+            tokens.add(body.substring(open, close + 1));
+            literalStart = index = close + 1;
+        }
+        literals.add(body.substring(literalStart));
+
+        return new RewardCommand(command, self, literals, slots, tokens);
+    }
+
+    /**
+     * Renders command
+     *
+     * @param player  Rewarded player
+     * @param blockId Id of power block
+     * @param rank    Rank of player
+     * @param damage  Damage dealt by player
+     * @return Command without leading <code>@</code>
+     */
+    public @NotNull String render(@NotNull Player player, @NotNull String blockId, int rank, int damage) {
+        final boolean papi = this.hasPapiSlots && PlaceholderStatics.hasPlaceholderAPISupport();
+        return render(player, blockId, rank, damage, papi ? PlaceholderStatics::askPapiForPlaceholders : null);
+    }
+
+    /**
+     * Renders command
+     *
+     * @param placeholders Resolver of other tokens, null keeps them as they are
+     * @return Command without leading <code>@</code>
+     * @see #render(Player, String, int, int)
+     */
+    @NotNull String render(@NotNull Player player, @NotNull String blockId, int rank, int damage,
+                           @Nullable BiFunction<String, Player, String> placeholders) {
+        final StringBuilder builder = new StringBuilder(this.estimatedLength);
+
+        for (int i = 0; i < this.slots.length; i++) {
+            builder.append(this.literals[i]);
+            switch (this.slots[i]) {
+                case PLAYER:
+                    builder.append(player.getName());
+                    break;
+                case UUID:
+                    builder.append(player.getUniqueId());
+                    break;
+                case DAMAGE:
+                    builder.append(damage);
+                    break;
+                case RANK:
+                    builder.append(rank);
+                    break;
+                case BLOCK_ID:
+                    builder.append(blockId);
+                    break;
+                case PAPI:
+                    builder.append(placeholders != null ? placeholders.apply(this.tokens[i], player) : this.tokens[i]);
+                    break;
+            }
+        }
+        builder.append(this.literals[this.slots.length]);
+        return builder.toString();
+    }
+
+    /**
+     * Compiles all reward commands
+     *
+     * @param commands Commands
+     * @return Compiled commands
+     */
+    public static @NotNull List<RewardCommand> compileAll(@NotNull List<String> commands) {
+        final List<RewardCommand> compiled = new ArrayList<>(commands.size());
+        for (String command : commands)
+            compiled.add(compile(command));
+        return compiled;
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+
+    /**
+     * Slot of command
+     */
+    private enum Slot {
+        PLAYER, UUID, DAMAGE, RANK, BLOCK_ID, PAPI;
+
+        private static @NotNull Slot of(@NotNull String name) {
+            switch (name) {
+                case "player":
+                    return PLAYER;
+                case "uuid":
+                    return UUID;
+                case "damage":
+                    return DAMAGE;
+                case "rank":
+                    return RANK;
+                case "pwb_id":
+                    return BLOCK_ID;
+                default:
+                    return PAPI;
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package xyz.rgnt.wfpowerblocks.rewards;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.extern.log4j.Log4j2;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import xyz.rgnt.wfpowerblocks.PowerBlocksMngr;
+import xyz.rgnt.wfpowerblocks.jfr.RewardDispatchEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatches reward commands on main thread within time budget of every tick.
+ * <p>
+ * Commands are dispatched in order in which they were queued. Player commands of offline player are parked
+ * together with all following commands of that player and queued again when player joins,
+ * so order of commands of every player is kept. Queued and dispatched commands are appended to {@link DispatchJournal}
+ * at the end of every tick in which they changed, so every tick encodes only its own changes. Restart does not lose
+ * queued commands, but commands dispatched in the tick before crash may be dispatched again, so delivery is
+ * at-least-once. Journal is written by single writer thread.
+ */
+@Log4j2(topic = "WarfarePowerBlocks - Rewards")
+public class RewardDispatcher {
+
+    private final Plugin plugin;
+    private final PowerBlocksMngr.Configuration configuration;
+    private final DispatchJournal journal;
+    private final File legacyFile;
+
+    private final Deque<DispatchJournal.Command> queue = new ArrayDeque<>();
+    private final Map<UUID, Deque<DispatchJournal.Command>> parked = new HashMap<>();
+    /**
+     * Records not handed to writer yet, guarded by queue
+     */
+    private final List<ByteBuffer> records = new ArrayList<>();
+    /**
+     * Sequences of commands dispatched since last write, guarded by queue
+     */
+    private long[] dispatched = new long[64];
+    private int dispatchedCount = 0;
+    private long nextSequence = 0;
+
+    private BukkitTask task;
+    private ExecutorService writer;
+
+    /**
+     * Default constructor
+     *
+     * @param plugin        Owning plugin
+     * @param configuration Configuration providing time budget
+     * @param file          Journal of pending commands
+     * @param legacyFile    JSON file of pending commands written by older versions, migrated by {@link #load()}
+     */
+    public RewardDispatcher(@NotNull Plugin plugin, @NotNull PowerBlocksMngr.Configuration configuration,
+                            @NotNull File file, @NotNull File legacyFile) {
+        this.plugin = plugin;
+        this.configuration = configuration;
+        this.journal = new DispatchJournal(file);
+        this.legacyFile = legacyFile;
+    }
+
+    /**
+     * Starts dispatching every tick
+     */
+    public void start() {
+        if (this.task != null)
+            return;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "WarfarePowerBlocks - Reward Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.task = Bukkit.getScheduler().runTaskTimer(this.plugin, this::dispatch, 1, 1);
+    }
+
+    /**
+     * Stops dispatching, pending commands are kept and written to journal before method returns
+     */
+    public void stop() {
+        if (this.task == null)
+            return;
+        this.task.cancel();
+        this.task = null;
+
+        persist();
+        this.writer.shutdown();
+        try {
+            if (!this.writer.awaitTermination(10, TimeUnit.SECONDS))
+                log.error("Pending reward commands were not written in time.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.writer = null;
+        try {
+            this.journal.close();
+        } catch (IOException e) {
+            log.error("Couldn't close reward dispatch journal", e);
+        }
+    }
+
+    /**
+     * Opens journal and queues pending commands stored in it, must be called before {@link #start()}
+     */
+    public void load() {
+        if (this.journal.isOpen())
+            return;
+        final List<DispatchJournal.Command> pending;
+        try {
+            pending = this.journal.open();
+        } catch (IOException e) {
+            log.error("Couldn't load pending reward commands", e);
+            return;
+        }
+        synchronized (this.queue) {
+            this.queue.clear();
+            this.parked.clear();
+            this.queue.addAll(pending);
+            this.nextSequence = pending.isEmpty() ? 0 : pending.get(pending.size() - 1).getSequence() + 1;
+        }
+        migrateLegacyFile();
+    }
+
+    /**
+     * Hands commands changed since last call to writer thread. Encodes only changes, so it is cheap to call every tick.
+     *
+     * @return Future completed once changes are written
+     */
+    public @NotNull CompletableFuture<Void> persist() {
+        final List<ByteBuffer> batch;
+        final boolean clear;
+        synchronized (this.queue) {
+            if (this.writer == null || (this.records.isEmpty() && this.dispatchedCount == 0))
+                return CompletableFuture.completedFuture(null);
+            // nothing is pending, so whole journal can be dropped instead of appending to it
+            clear = this.queue.isEmpty() && this.parked.isEmpty();
+            if (clear)
+                batch = null;
+            else {
+                batch = new ArrayList<>(this.records);
+                if (this.dispatchedCount > 0)
+                    batch.add(DispatchJournal.done(this.dispatched, this.dispatchedCount));
+            }
+            this.records.clear();
+            this.dispatchedCount = 0;
+        }
+        // writes of single thread are ordered, so journal always ends with latest changes
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (clear)
+                    this.journal.clear();
+                else
+                    this.journal.write(batch);
+            } catch (IOException e) {
+                log.error("Couldn't write pending reward commands", e);
+            }
+        }, this.writer);
+    }
+
+    /**
+     * Renders and queues reward commands of player
+     *
+     * @param commands Commands
+     * @param player   Rewarded player
+     * @param blockId  Id of power block
+     * @param rank     Rank of player
+     * @param damage   Damage dealt by player
+     */
+    public void enqueue(@NotNull List<RewardCommand> commands, @NotNull Player player, @NotNull String blockId, int rank, int damage) {
+        final UUID uuid = player.getUniqueId();
+        final List<String> rendered = new ArrayList<>(commands.size());
+        for (RewardCommand command : commands)
+            rendered.add(command.render(player, blockId, rank, damage));
+
+        synchronized (this.queue) {
+            for (int i = 0; i < commands.size(); i++)
+                add(new DispatchJournal.Command(this.nextSequence++, uuid, rendered.get(i), commands.get(i).isSelf()));
+        }
+    }
+
+    /**
+     * Queues parked commands of joined player
+     *
+     * @param player Player
+     */
+    public void release(@NotNull UUID player) {
+        synchronized (this.queue) {
+            final Deque<DispatchJournal.Command> commands = this.parked.remove(player);
+            if (commands != null)
+                this.queue.addAll(commands);
+        }
+    }
+
+    /**
+     * @return Count of queued commands
+     */
+    public int getQueuedCount() {
+        synchronized (this.queue) {
+            return this.queue.size();
+        }
+    }
+
+    /**
+     * @return Count of commands waiting for their players to join
+     */
+    public int getParkedCount() {
+        synchronized (this.queue) {
+            int count = 0;
+            for (Deque<DispatchJournal.Command> commands : this.parked.values())
+                count += commands.size();
+            return count;
+        }
+    }
+
+    /**
+     * Dispatches queued commands until time budget of tick is exhausted. At least one command is always dispatched.
+     */
+    private void dispatch() {
+        final long budget = (long) (this.configuration.getRewardDispatchBudget() * 1_000_000);
+        final long start = System.nanoTime();
+        final RewardDispatchEvent event = new RewardDispatchEvent();
+        event.begin();
+        int dispatched = 0;
+        do {
+            final DispatchJournal.Command command;
+            final Player player;
+            synchronized (this.queue) {
+                command = this.queue.poll();
+                if (command == null)
+                    break;
+
+                player = Bukkit.getPlayer(command.getPlayer());
+                final Deque<DispatchJournal.Command> parkedCommands = this.parked.get(command.getPlayer());
+                // keep order of player commands, once parked, all following commands are parked as well
+                if (parkedCommands != null || (command.isSelf() && player == null)) {
+                    this.parked.computeIfAbsent(command.getPlayer(), key -> new ArrayDeque<>()).add(command);
+                    continue;
+                }
+                markDispatched(command.getSequence());
+            }
+
+            try {
+                if (command.isSelf())
+                    player.performCommand(command.getCommand());
+                else
+                    Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command.getCommand());
+            } catch (Exception x) {
+                log.error("Failed to dispatch reward command '{}'", command.getCommand(), x);
+            }
+            dispatched++;
+        } while (System.nanoTime() - start < budget);
+        persist();
+
+        if (dispatched > 0 && event.shouldCommit()) {
+            event.dispatchedCount = dispatched;
+            event.remainingCount = getQueuedCount();
+            event.commit();
+        }
+    }
+
+    /**
+     * Must be called while queue is locked
+     */
+    private void add(@NotNull DispatchJournal.Command command) {
+        this.queue.add(command);
+        this.records.add(DispatchJournal.queued(command));
+    }
+
+    /**
+     * Must be called while queue is locked
+     */
+    private void markDispatched(long sequence) {
+        if (this.dispatchedCount == this.dispatched.length)
+            this.dispatched = Arrays.copyOf(this.dispatched, this.dispatched.length * 2);
+        this.dispatched[this.dispatchedCount++] = sequence;
+    }
+
+    /**
+     * Queues commands from JSON file written by older versions
+     */
+    private void migrateLegacyFile() {
+        if (!this.legacyFile.exists())
+            return;
+        try (Reader reader = Files.newBufferedReader(this.legacyFile.toPath(), StandardCharsets.UTF_8)) {
+            final JsonElement data = new JsonParser().parse(reader);
+            int count = 0;
+            if (data != null && data.isJsonObject() && data.getAsJsonObject().has("pending")) {
+                synchronized (this.queue) {
+                    for (JsonElement element : data.getAsJsonObject().getAsJsonArray("pending")) {
+                        final JsonObject entry = element.getAsJsonObject();
+                        add(new DispatchJournal.Command(
+                                this.nextSequence++,
+                                UUID.fromString(entry.get("player").getAsString()),
+                                entry.get("command").getAsString(),
+                                entry.get("self").getAsBoolean()
+                        ));
+                        count++;
+                    }
+                    // legacy file is moved away only once its commands are in journal
+                    this.journal.write(this.records);
+                    this.records.clear();
+                }
+            }
+            log.info("Migrated {} pending reward commands from legacy file.", count);
+        } catch (Exception e) {
+            log.error("Couldn't migrate pending reward commands", e);
+            return;
+        }
+        try {
+            Files.move(this.legacyFile.toPath(), new File(this.legacyFile.getPath() + ".migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Couldn't move legacy file of pending reward commands", e);
+        }
+    }
+}
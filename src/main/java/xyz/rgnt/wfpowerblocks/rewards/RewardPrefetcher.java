@@ -0,0 +1,82 @@
+package xyz.rgnt.wfpowerblocks.rewards;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads queued rewards of players while they are logging in, so join handles rewards which were pending at login.
+ * <p>
+ * Rewards are only read, they are reserved when they are handed to the dispatcher. Prefetched rewards of players
+ * whose login was aborted are discarded, prefetched rewards not taken in time expire.
+ */
+public class RewardPrefetcher {
+
+    /**
+     * Time after which prefetched rewards not taken by join are discarded
+     */
+    private static final long EXPIRATION_MS = 60_000;
+
+    private final Map<UUID, Prefetch> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * Reads pending rewards of logging player. Called from login thread.
+     *
+     * @param queue  Reward queue
+     * @param player Player UUID
+     */
+    public void prefetch(@NotNull RewardQueue queue, @NotNull UUID player) {
+        pruneExpired();
+        if (!queue.hasRewards(player))
+            return;
+        this.prefetched.put(player, new Prefetch(queue.peek(player)));
+    }
+
+    /**
+     * Takes prefetched rewards of joined player
+     *
+     * @param player Player UUID
+     * @return Prefetched rewards or null if rewards were not prefetched
+     */
+    public @Nullable List<RewardQueue.Reward> take(@NotNull UUID player) {
+        final Prefetch prefetch = this.prefetched.remove(player);
+        return prefetch != null ? prefetch.rewards : null;
+    }
+
+    /**
+     * Discards prefetched rewards of player, for example when login was disallowed
+     *
+     * @param player Player UUID
+     */
+    public void discard(@NotNull UUID player) {
+        this.prefetched.remove(player);
+    }
+
+    /**
+     * @return Count of players with prefetched rewards
+     */
+    public int size() {
+        return this.prefetched.size();
+    }
+
+    private void pruneExpired() {
+        final long now = System.currentTimeMillis();
+        this.prefetched.values().removeIf(prefetch -> now - prefetch.createdAt > EXPIRATION_MS);
+    }
+
+    /**
+     * Rewards read during login
+     */
+    private static class Prefetch {
+        private final List<RewardQueue.Reward> rewards;
+        private final long createdAt = System.currentTimeMillis();
+
+        private Prefetch(@NotNull List<RewardQueue.Reward> rewards) {
+            this.rewards = rewards;
+        }
+    }
+}
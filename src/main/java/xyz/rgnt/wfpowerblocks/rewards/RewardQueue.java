@@ -0,0 +1,394 @@
+package xyz.rgnt.wfpowerblocks.rewards;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rewards of offline players waiting for their join.
+ * <p>
+ * Rewards are persisted in append-only file, every change is forced to disk before method returns.
+ * Pending rewards are also indexed in memory, so lookups are lock-free and never wait for disk.
+ * Record of file is <code>[length][uuid msb][uuid lsb][op][payload]</code>, where {@link #OP_ADD} carries
+ * power block id, rank and damage and {@link #OP_CLAIM} carries count of oldest pending rewards of player it claims.
+ * Rewards are reserved in memory when they are handed out and their claim is written later, so rewards are never
+ * handed out twice while claim is being written. File is compacted when opened if most of its records are claimed.
+ */
+@Log4j2(topic = "WarfarePowerBlocks - Reward Queue")
+public class RewardQueue implements Closeable {
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_CLAIM = 2;
+
+    /**
+     * Size of record header following record length
+     */
+    private static final int HEADER_SIZE = Long.BYTES * 2 + Byte.BYTES;
+
+    private final File file;
+    /**
+     * Pending rewards of players in order in which they were queued, lists are never modified once published
+     */
+    private final Map<UUID, List<Pending>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Guarded by this
+     */
+    private FileChannel channel;
+    /**
+     * Whether every record is forced to disk, compaction forces only once
+     */
+    private boolean durable = true;
+    /**
+     * Count of records which hold no pending reward, counted when file is indexed
+     */
+    private int deadRecords = 0;
+
+    /**
+     * Default constructor
+     *
+     * @param file Queue file
+     */
+    public RewardQueue(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens queue file and indexes pending rewards
+     *
+     * @throws IOException When file can not be read
+     */
+    public synchronized void open() throws IOException {
+        if (this.channel != null)
+            return;
+        Files.createDirectories(this.file.toPath().toAbsolutePath().getParent());
+        this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index();
+
+        if (this.deadRecords > 64 && this.deadRecords > this.size.get())
+            compact();
+    }
+
+    /**
+     * Queues rewards with single write, which is forced to disk once. Rewards are visible once they are written.
+     *
+     * @param rewards Players and their rewards
+     * @throws IOException When rewards can not be written
+     */
+    public synchronized void addAll(@NotNull List<Map.Entry<UUID, Reward>> rewards) throws IOException {
+        if (rewards.isEmpty())
+            return;
+        final List<ByteBuffer> records = new ArrayList<>(rewards.size());
+        int length = 0;
+        for (Map.Entry<UUID, Reward> entry : rewards) {
+            final Reward reward = entry.getValue();
+            final byte[] id = reward.getBlockId().getBytes(StandardCharsets.UTF_8);
+            final ByteBuffer payload = ByteBuffer.allocate(Short.BYTES + id.length + Integer.BYTES * 2);
+            payload.putShort((short) id.length).put(id).putInt(reward.getRank()).putInt(reward.getDamage()).flip();
+
+            final ByteBuffer record = record(entry.getKey(), OP_ADD, payload);
+            records.add(record);
+            length += record.remaining();
+        }
+
+        final ByteBuffer batch = ByteBuffer.allocate(length);
+        records.forEach(batch::put);
+        long offset = write(batch.flip());
+        for (int i = 0; i < rewards.size(); i++) {
+            append(rewards.get(i).getKey(), new Pending(offset, rewards.get(i).getValue()));
+            offset += records.get(i).capacity();
+        }
+    }
+
+    /**
+     * Pending rewards of player without reserving them, never blocks
+     *
+     * @param player Player UUID
+     * @return Pending rewards in order in which they were queued
+     */
+    public @NotNull List<Reward> peek(@NotNull UUID player) {
+        final List<Pending> playerRewards = this.pending.get(player);
+        if (playerRewards == null)
+            return Collections.emptyList();
+
+        final List<Reward> rewards = new ArrayList<>(playerRewards.size());
+        for (Pending reward : playerRewards)
+            rewards.add(reward.reward);
+        return rewards;
+    }
+
+    /**
+     * Marks rewards of player as claimed in memory, so they are not handed out again. Claim of reserved rewards
+     * is written with {@link #writeClaim(UUID, int)}, until then they are pending after restart. Never blocks.
+     *
+     * @param player  Player UUID
+     * @param rewards Rewards returned by {@link #peek(UUID)}
+     * @return Rewards which were still pending and are reserved now, in order in which they were queued
+     */
+    public @NotNull List<Reward> reserve(@NotNull UUID player, @NotNull List<Reward> rewards) {
+        final List<Reward> reserved = new ArrayList<>(rewards.size());
+        this.pending.computeIfPresent(player, (key, playerRewards) -> {
+            reserved.clear();
+            final List<Pending> remaining = new ArrayList<>(playerRewards.size());
+            for (Pending reward : playerRewards) {
+                if (containsInstance(rewards, reward.reward))
+                    reserved.add(reward.reward);
+                else
+                    remaining.add(reward);
+            }
+            return remaining.isEmpty() ? null : Collections.unmodifiableList(remaining);
+        });
+        this.size.addAndGet(-reserved.size());
+        return reserved;
+    }
+
+    /**
+     * Writes claim of oldest reserved rewards of player
+     *
+     * @param player Player UUID
+     * @param count  Count of reserved rewards
+     * @throws IOException When claim can not be written
+     */
+    public synchronized void writeClaim(@NotNull UUID player, int count) throws IOException {
+        if (count <= 0)
+            return;
+        write(record(player, OP_CLAIM, ByteBuffer.allocate(Integer.BYTES).putInt(count).flip()));
+    }
+
+    /**
+     * Reserves all pending rewards of player and writes their claim
+     *
+     * @param player Player UUID
+     * @return Claimed rewards in order in which they were queued
+     * @throws IOException When claim can not be written
+     */
+    public @NotNull List<Reward> take(@NotNull UUID player) throws IOException {
+        final List<Reward> rewards = reserve(player, peek(player));
+        writeClaim(player, rewards.size());
+        return rewards;
+    }
+
+    /**
+     * @param player Player UUID
+     * @return Boolean true if player has pending rewards, else false.
+     */
+    public boolean hasRewards(@NotNull UUID player) {
+        return this.pending.containsKey(player);
+    }
+
+    /**
+     * @return Count of pending rewards
+     */
+    public int getSize() {
+        return this.size.get();
+    }
+
+    /**
+     * @return Count of players with pending rewards
+     */
+    public int getPlayerCount() {
+        return this.pending.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    private void append(@NotNull UUID player, @NotNull Pending reward) {
+        this.pending.compute(player, (key, playerRewards) -> {
+            if (playerRewards == null)
+                return Collections.singletonList(reward);
+            final List<Pending> rewards = new ArrayList<>(playerRewards.size() + 1);
+            rewards.addAll(playerRewards);
+            rewards.add(reward);
+            return Collections.unmodifiableList(rewards);
+        });
+        this.size.incrementAndGet();
+    }
+
+    private static boolean containsInstance(@NotNull List<Reward> rewards, @NotNull Reward reward) {
+        for (Reward candidate : rewards) {
+            if (candidate == reward)
+                return true;
+        }
+        return false;
+    }
+
+    private static @NotNull ByteBuffer record(@NotNull UUID player, byte op, @NotNull ByteBuffer payload) {
+        final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + HEADER_SIZE + payload.remaining());
+        record.putInt(HEADER_SIZE + payload.remaining())
+                .putLong(player.getMostSignificantBits())
+                .putLong(player.getLeastSignificantBits())
+                .put(op)
+                .put(payload)
+                .flip();
+        return record;
+    }
+
+    /**
+     * Appends records to the end of file
+     *
+     * @return Offset of first record
+     */
+    private long write(@NotNull ByteBuffer records) throws IOException {
+        final long offset = this.channel.size();
+        long position = offset;
+        while (records.hasRemaining())
+            position += this.channel.write(records, position);
+        if (this.durable)
+            this.channel.force(false);
+        return offset;
+    }
+
+    private void readFully(@NotNull ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            final int read = this.channel.read(buffer, position);
+            if (read < 0)
+                throw new IOException("Unexpected end of reward queue file at " + position);
+            position += read;
+        }
+    }
+
+    /**
+     * Scans whole file and indexes pending rewards. Truncated record at the end of file is dropped.
+     */
+    private void index() throws IOException {
+        this.pending.clear();
+        this.size.set(0);
+        this.deadRecords = 0;
+
+        final long fileSize = this.channel.size();
+        final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        long offset = 0;
+        while (offset + Integer.BYTES <= fileSize) {
+            length.clear();
+            readFully(length, offset);
+            final int recordLength = length.flip().getInt();
+            if (recordLength < HEADER_SIZE || offset + Integer.BYTES + recordLength > fileSize)
+                break;
+
+            final ByteBuffer record = ByteBuffer.allocate(recordLength);
+            readFully(record, offset + Integer.BYTES);
+            record.flip();
+            final UUID player = new UUID(record.getLong(), record.getLong());
+            final byte op = record.get();
+
+            try {
+                if (op == OP_ADD) {
+                    final byte[] id = new byte[record.getShort()];
+                    record.get(id);
+                    append(player, new Pending(offset, new Reward(new String(id, StandardCharsets.UTF_8), record.getInt(), record.getInt())));
+                } else if (op == OP_CLAIM) {
+                    final int count = record.getInt();
+                    final List<Pending> playerRewards = this.pending.get(player);
+                    if (playerRewards != null) {
+                        final int claimed = Math.min(count, playerRewards.size());
+                        if (claimed == playerRewards.size())
+                            this.pending.remove(player);
+                        else
+                            this.pending.put(player, Collections.unmodifiableList(new ArrayList<>(playerRewards.subList(claimed, playerRewards.size()))));
+                        this.size.addAndGet(-claimed);
+                        this.deadRecords += claimed;
+                    }
+                    this.deadRecords++;
+                } else
+                    break;
+            } catch (BufferUnderflowException | NegativeArraySizeException x) {
+                break;
+            }
+            offset += Integer.BYTES + recordLength;
+        }
+
+        if (offset < fileSize) {
+            log.warn("Reward queue file is damaged after offset {}, dropping {} bytes.", offset, fileSize - offset);
+            this.channel.truncate(offset);
+            this.channel.force(true);
+        }
+    }
+
+    /**
+     * Rewrites file with pending rewards only
+     */
+    private void compact() throws IOException {
+        final List<Map.Entry<UUID, Pending>> ordered = new ArrayList<>(this.size.get());
+        this.pending.forEach((player, playerRewards) -> playerRewards.forEach(reward -> ordered.add(Map.entry(player, reward))));
+        ordered.sort(Comparator.comparingLong(entry -> entry.getValue().offset));
+        final List<Map.Entry<UUID, Reward>> rewards = new ArrayList<>(ordered.size());
+        for (Map.Entry<UUID, Pending> entry : ordered)
+            rewards.add(Map.entry(entry.getKey(), entry.getValue().reward));
+
+        final File compacted = new File(this.file.getPath() + ".compact");
+        Files.deleteIfExists(compacted.toPath());
+        final RewardQueue target = new RewardQueue(compacted);
+        target.durable = false;
+        target.open();
+        try {
+            target.addAll(rewards);
+            target.channel.force(true);
+        } finally {
+            target.close();
+        }
+
+        this.channel.close();
+        Files.move(compacted.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index();
+        log.info("Compacted reward queue file, {} pending rewards kept.", this.size.get());
+    }
+
+    /**
+     * Pending reward and offset of its record
+     */
+    private static class Pending {
+        private final long offset;
+        private final Reward reward;
+
+        private Pending(long offset, @NotNull Reward reward) {
+            this.offset = offset;
+            this.reward = reward;
+        }
+    }
+
+    /**
+     * Queued reward
+     */
+    public static class Reward {
+        @Getter
+        private final String blockId;
+        @Getter
+        private final int rank;
+        @Getter
+        private final int damage;
+
+        /**
+         * @param blockId Id of power block
+         * @param rank    Rank of player
+         * @param damage  Damage dealt by player
+         */
+        public Reward(@NotNull String blockId, int rank, int damage) {
+            this.blockId = blockId;
+            this.rank = rank;
+            this.damage = damage;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package xyz.rgnt.revoken.common.providers.storage.data;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import xyz.rgnt.revoken.common.providers.storage.data.codec.ICodec;
+import xyz.rgnt.revoken.common.providers.storage.data.codec.meta.CodecKey;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AuxWriterTest {
+
+    @Test
+    void jsonGroupsInterleavedPaths() throws Exception {
+        final String output = encode(AuxData.TypeAdapter.JSON);
+        assertEquals(1, occurrences(output, "\"damage\""));
+        assertEquals(1, occurrences(output, "\"blocks\""));
+
+        final JsonObject settings = new JsonParser().parse(output).getAsJsonObject().getAsJsonObject("settings");
+        assertEquals(10, settings.getAsJsonObject("damage").get("hits-per-second").getAsInt());
+        assertEquals(5, settings.getAsJsonObject("damage").get("explosion").getAsInt());
+        assertEquals(true, settings.getAsJsonObject("blocks").get("preload-chunks").getAsBoolean());
+        assertEquals("loud", settings.getAsJsonObject("damage").getAsJsonObject("sound").get("name").getAsString());
+    }
+
+    @Test
+    void yamlGroupsInterleavedPaths() throws Exception {
+        final String output = encode(AuxData.TypeAdapter.YAML);
+        assertEquals(1, occurrences(output, "damage:"));
+        assertEquals(1, occurrences(output, "blocks:"));
+    }
+
+    @Test
+    void sectorsAreRelative() throws Exception {
+        final StringWriter buffer = new StringWriter();
+        try (final AuxWriter writer = AuxWriter.toJson(buffer)) {
+            writer.beginSector("a.b");
+            writer.set("c", 1);
+            writer.endSector();
+            writer.set("a.d", "e");
+        }
+
+        final JsonObject a = new JsonParser().parse(buffer.toString()).getAsJsonObject().getAsJsonObject("a");
+        assertEquals(1, a.getAsJsonObject("b").get("c").getAsInt());
+        assertEquals("e", a.get("d").getAsString());
+    }
+
+    private static String encode(AuxData.TypeAdapter typeAdapter) throws Exception {
+        final StringWriter buffer = new StringWriter();
+        try (final AuxWriter writer = AuxWriter.of(typeAdapter, buffer)) {
+            writer.encode(new InterleavedCodec());
+        }
+        return buffer.toString();
+    }
+
+    private static int occurrences(String text, String value) {
+        int count = 0;
+        for (int index = text.indexOf(value); index >= 0; index = text.indexOf(value, index + 1))
+            count++;
+        return count;
+    }
+
+    /**
+     * Fields sharing a parent are not declared next to each other
+     */
+    static class InterleavedCodec implements ICodec {
+        @CodecKey("settings.damage.hits-per-second")
+        private int hitsPerSecond = 10;
+        @CodecKey("settings.blocks.preload-chunks")
+        private boolean preloadChunks = true;
+        @CodecKey("settings.damage.explosion")
+        private int explosion = 5;
+        @CodecKey("settings.damage.sound")
+        private NestedCodec sound = new NestedCodec();
+    }
+
+    static class NestedCodec implements ICodec {
+        @CodecKey("name")
+        private String name = "loud";
+    }
+}
@@ -0,0 +1,97 @@
+package xyz.rgnt.wfpowerblocks.block;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttackerRankingTest {
+
+    /**
+     * Order of ranking, highest damage first, ties by UUID
+     */
+    private static final Comparator<AttackerRanking.Node> ORDER = Comparator
+            .<AttackerRanking.Node>comparingInt(node -> -node.damage)
+            .thenComparingLong(node -> node.most)
+            .thenComparingLong(node -> node.least);
+
+    @Test
+    void randomInsertsAndUpdatesMatchSortedList() {
+        for (int seed = 0; seed < 20; seed++) {
+            final SplittableRandom random = new SplittableRandom(seed);
+            final AttackerRanking ranking = new AttackerRanking();
+            final List<AttackerRanking.Node> nodes = new ArrayList<>();
+
+            for (int step = 0; step < 2_000; step++) {
+                if (nodes.isEmpty() || random.nextInt(4) == 0)
+                    // narrow damage range makes ties common, so UUID order is exercised as well
+                    nodes.add(ranking.insert(random.nextLong(), random.nextLong(), random.nextInt(50)));
+                else {
+                    final AttackerRanking.Node node = nodes.get(random.nextInt(nodes.size()));
+                    // damage only grows in plugin, but ranking has to handle decrease as well
+                    ranking.update(node, random.nextInt(4) == 0 ? random.nextInt(50) : node.damage + random.nextInt(10));
+                }
+                if (step % 100 == 0)
+                    verify(ranking, nodes);
+            }
+            verify(ranking, nodes);
+        }
+    }
+
+    @Test
+    void tiesAreOrderedByUuid() {
+        final AttackerRanking ranking = new AttackerRanking();
+        final AttackerRanking.Node second = ranking.insert(1, 2, 10);
+        final AttackerRanking.Node first = ranking.insert(1, 1, 10);
+        final AttackerRanking.Node third = ranking.insert(-1, 0, 5);
+
+        assertSame(first, ranking.atRank(1));
+        assertSame(second, ranking.atRank(2));
+        assertEquals(3, ranking.rankOf(third));
+
+        ranking.update(third, 10);
+        assertEquals(1, ranking.rankOf(third));
+        assertEquals(3, ranking.rankOf(second));
+    }
+
+    @Test
+    void clearResetsRanking() {
+        final AttackerRanking ranking = new AttackerRanking();
+        for (int i = 0; i < 100; i++)
+            ranking.insert(i, i, i);
+        ranking.clear();
+        assertEquals(0, ranking.size());
+        assertNull(ranking.first());
+        assertNull(ranking.atRank(1));
+
+        final AttackerRanking.Node node = ranking.insert(7, 7, 7);
+        assertEquals(1, ranking.rankOf(node));
+        assertSame(node, ranking.atRank(1));
+    }
+
+    private static void verify(AttackerRanking ranking, List<AttackerRanking.Node> nodes) {
+        final List<AttackerRanking.Node> expected = new ArrayList<>(nodes);
+        expected.sort(ORDER);
+
+        assertEquals(expected.size(), ranking.size());
+        assertNull(ranking.atRank(0));
+        assertNull(ranking.atRank(expected.size() + 1));
+
+        AttackerRanking.Node walked = ranking.first();
+        AttackerRanking.Node previous = null;
+        for (int i = 0; i < expected.size(); i++) {
+            final AttackerRanking.Node node = expected.get(i);
+            assertSame(node, walked, "node walked at rank " + (i + 1));
+            assertSame(previous, node.backward, "backward link at rank " + (i + 1));
+            assertSame(node, ranking.atRank(i + 1), "atRank " + (i + 1));
+            assertEquals(i + 1, ranking.rankOf(node), "rankOf at rank " + (i + 1));
+            previous = walked;
+            walked = walked.next();
+        }
+        assertNull(walked);
+    }
+}
@@ -0,0 +1,109 @@
+package xyz.rgnt.wfpowerblocks.block;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttackerTableTest {
+
+    @Test
+    void rankingFollowsCountersLazily() {
+        final AttackerTable table = new AttackerTable();
+        final UUID first = new UUID(1, 1);
+        final UUID second = new UUID(2, 2);
+
+        assertEquals(5, table.add(first, 5));
+        assertEquals(3, table.add(second, 3));
+        assertEquals(1, table.rankOf(first));
+        assertEquals(2, table.gapOf(second));
+
+        // several hits between queries move attacker once
+        table.add(second, 2);
+        table.add(second, 2);
+        assertEquals(7, table.get(second));
+        assertEquals(second, table.atRank(1).getKey());
+        assertEquals(7, (int) table.atRank(1).getValue());
+        assertEquals(2, table.size());
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(0, table.get(first));
+        assertNull(table.atRank(1));
+        table.add(first, 1);
+        assertEquals(1, table.top(10).size());
+    }
+
+    @Test
+    void concurrentHitsAreNotLost() throws Exception {
+        final AttackerTable table = new AttackerTable();
+        final int threads = 4;
+        final int hits = 20_000;
+        final int attackers = 64;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            writers.add(new Thread(() -> {
+                final SplittableRandom random = new SplittableRandom(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < hits; i++)
+                        table.add(new UUID(0, random.nextInt(attackers)), 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        // reader reconciles ranking while counters change
+        final Thread reader = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    final List<Map.Entry<UUID, Integer>> top = table.top(attackers);
+                    for (int i = 1; i < top.size(); i++)
+                        assertTrue(top.get(i - 1).getValue() >= top.get(i).getValue(), "ranking is out of order");
+                }
+            } catch (Throwable x) {
+                failure.set(x);
+            }
+        });
+
+        writers.forEach(Thread::start);
+        reader.start();
+        start.countDown();
+        for (Thread writer : writers)
+            writer.join();
+        running.set(false);
+        reader.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+
+        // expected counters replay the same random hits
+        final Map<UUID, Integer> expected = new HashMap<>();
+        for (int t = 0; t < threads; t++) {
+            final SplittableRandom random = new SplittableRandom(t);
+            for (int i = 0; i < hits; i++)
+                expected.merge(new UUID(0, random.nextInt(attackers)), 1, Integer::sum);
+        }
+
+        final List<Map.Entry<UUID, Integer>> entries = table.entries();
+        assertEquals(expected.size(), entries.size());
+        long total = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            final Map.Entry<UUID, Integer> entry = entries.get(i);
+            assertEquals(expected.get(entry.getKey()), entry.getValue());
+            assertEquals(i + 1, table.rankOf(entry.getKey()));
+            if (i > 0)
+                assertTrue(entries.get(i - 1).getValue() >= entry.getValue());
+            total += entry.getValue();
+        }
+        assertEquals((long) threads * hits, total);
+    }
+}
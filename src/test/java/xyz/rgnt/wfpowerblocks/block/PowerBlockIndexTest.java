@@ -0,0 +1,166 @@
+package xyz.rgnt.wfpowerblocks.block;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PowerBlockIndexTest {
+
+    /**
+     * Mask of world slot and chunk filter before first resize
+     */
+    private static final int INITIAL_MASK = 15;
+
+    private final World world = world(new UUID(1, 1));
+    private final World otherWorld = world(new UUID(2, 2));
+
+    @Test
+    void removeShiftsClusterWrappedAroundTableEnd() {
+        final PowerBlockIndex index = new PowerBlockIndex();
+        // three blocks hashed to last slot, cluster continues at start of table
+        final List<PowerBlock> last = blocksWithHome(INITIAL_MASK, 3, 0);
+        // block hashed to first slot is pushed behind wrapped cluster
+        final PowerBlock first = blocksWithHome(0, 1, 1000).get(0);
+        last.forEach(index::put);
+        index.put(first);
+
+        assertSame(last.get(0), index.remove(this.world.getUID(), key(last.get(0))));
+        assertNull(index.get(this.world.getUID(), key(last.get(0))));
+        for (PowerBlock block : List.of(last.get(1), last.get(2), first))
+            assertSame(block, index.get(this.world.getUID(), key(block)));
+
+        assertSame(last.get(2), index.remove(this.world.getUID(), key(last.get(2))));
+        assertSame(last.get(1), index.get(this.world.getUID(), key(last.get(1))));
+        assertSame(first, index.get(this.world.getUID(), key(first)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void removeKeepsEntryAtItsHomeAfterTableEnd() {
+        final PowerBlockIndex index = new PowerBlockIndex();
+        final PowerBlock last = blocksWithHome(INITIAL_MASK, 1, 0).get(0);
+        final PowerBlock first = blocksWithHome(0, 1, 1000).get(0);
+        index.put(last);
+        index.put(first);
+
+        // entry following removed slot across table end is at its home, so it must not be shifted before it
+        assertSame(last, index.remove(this.world.getUID(), key(last)));
+        assertSame(first, index.get(this.world.getUID(), key(first)));
+        assertTrue(index.mayContain(this.world, first.getBlockLocation().getBlockX() >> 4, 0));
+    }
+
+    @Test
+    void randomPutsAndRemovesMatchMap() {
+        final SplittableRandom random = new SplittableRandom(42);
+        final PowerBlockIndex index = new PowerBlockIndex();
+        final Map<Long, PowerBlock> expected = new HashMap<>();
+        final Map<Long, Integer> chunks = new HashMap<>();
+        final List<Long> removedKeys = new ArrayList<>();
+
+        for (int step = 0; step < 5_000; step++) {
+            if (expected.isEmpty() || random.nextInt(3) != 0) {
+                // small area keeps several blocks in every chunk and causes resizes of both tables
+                final PowerBlock block = block("block-" + step, random.nextInt(-96, 96), random.nextInt(0, 4), random.nextInt(-96, 96));
+                final PowerBlock previous = expected.put(key(block), block);
+                assertSame(previous, index.put(block));
+                if (previous == null)
+                    chunks.merge(chunkKey(block), 1, Integer::sum);
+            } else {
+                final List<Long> keys = new ArrayList<>(expected.keySet());
+                final long key = keys.get(random.nextInt(keys.size()));
+                final PowerBlock removed = expected.remove(key);
+                assertSame(removed, index.remove(this.world.getUID(), key));
+                chunks.computeIfPresent(chunkKey(removed), (chunk, count) -> count > 1 ? count - 1 : null);
+                removedKeys.add(key);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<Long, PowerBlock> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), index.get(this.world.getUID(), entry.getKey()));
+            assertSame(entry.getValue(), index.get(entry.getValue().getId()));
+        }
+        for (long key : removedKeys)
+            if (!expected.containsKey(key))
+                assertNull(index.get(this.world.getUID(), key));
+        for (int chunkX = -6; chunkX < 6; chunkX++)
+            for (int chunkZ = -6; chunkZ < 6; chunkZ++)
+                assertEquals(chunks.containsKey(PowerBlockIndex.chunkKey(chunkX, chunkZ)), index.mayContain(this.world, chunkX, chunkZ));
+    }
+
+    @Test
+    void removeWorldDropsOnlyItsBlocks() {
+        final PowerBlockIndex index = new PowerBlockIndex();
+        final PowerBlock a = block("a", 0, 64, 0);
+        final PowerBlock b = block("b", 40, 64, 40);
+        final PowerBlock other = PowerBlock.builder("other").fromBukkitLocation(new Location(this.otherWorld, 0, 64, 0)).build();
+        index.put(a);
+        index.put(b);
+        index.put(other);
+
+        // world is cached by lookup before it is removed
+        assertTrue(index.mayContain(this.world, 0, 0));
+        final List<PowerBlock> removed = index.removeWorld(this.world.getUID());
+
+        assertEquals(2, removed.size());
+        assertTrue(removed.containsAll(List.of(a, b)));
+        assertEquals(1, index.size());
+        assertEquals(Set.of("other"), index.ids());
+        assertNull(index.get("a"));
+        assertNull(index.get(this.world.getUID(), key(a)));
+        assertFalse(index.mayContain(this.world, 0, 0));
+        assertSame(other, index.get(this.otherWorld.getUID(), key(other)));
+        assertTrue(index.removeWorld(this.world.getUID()).isEmpty());
+
+        // world can be indexed again once it loads
+        assertNull(index.put(a));
+        assertSame(a, index.get(this.world.getUID(), key(a)));
+        assertTrue(index.mayContain(this.world, 0, 0));
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * Finds blocks whose key is hashed to specified slot of table with initial capacity
+     */
+    private List<PowerBlock> blocksWithHome(int home, int count, int fromX) {
+        final List<PowerBlock> blocks = new ArrayList<>(count);
+        for (int x = fromX; blocks.size() < count; x++) {
+            final PowerBlock block = block("block-" + x, x, 64, 0);
+            if (PowerBlockIndex.index(key(block), INITIAL_MASK) == home)
+                blocks.add(block);
+        }
+        return blocks;
+    }
+
+    private PowerBlock block(String id, int x, int y, int z) {
+        return PowerBlock.builder(id).fromBukkitLocation(new Location(this.world, x, y, z)).build();
+    }
+
+    private static long key(PowerBlock block) {
+        return block.getBlockLocation().toBlockKey();
+    }
+
+    private static long chunkKey(PowerBlock block) {
+        return PowerBlockIndex.chunkKey(block.getBlockLocation().getBlockX() >> 4, block.getBlockLocation().getBlockZ() >> 4);
+    }
+
+    private static World world(UUID uid) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUID":
+                    return uid;
+                case "hashCode":
+                    return uid.hashCode();
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
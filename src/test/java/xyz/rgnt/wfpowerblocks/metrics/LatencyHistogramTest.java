@@ -0,0 +1,89 @@
+package xyz.rgnt.wfpowerblocks.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    /**
+     * Bucket is 1/16 of its power of two wide, midpoint is never further than that from any value of bucket
+     */
+    private static final double MAX_RELATIVE_ERROR = 1 / 16d;
+
+    private static final double[] PERCENTILES = {0, 1, 25, 50, 75, 90, 99, 99.9, 100};
+
+    @Test
+    void percentilesStayWithinBucketError() {
+        final SplittableRandom random = new SplittableRandom(7);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // log-uniform from nanoseconds to seconds covers many powers of two
+            values[i] = (long) Math.pow(2, random.nextDouble() * 30);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        assertEquals(Arrays.stream(values).sum(), snapshot.getSum());
+
+        long previous = 0;
+        for (double percentile : PERCENTILES) {
+            final long exact = values[(int) Math.max(0, Math.ceil(values.length * percentile / 100d) - 1)];
+            final long reported = snapshot.getPercentile(percentile);
+            assertTrue(Math.abs(reported - exact) <= exact * MAX_RELATIVE_ERROR,
+                    "p" + percentile + " reported " + reported + " exact " + exact);
+            assertTrue(reported <= snapshot.getMax(), "p" + percentile + " above max");
+            assertTrue(reported >= previous, "p" + percentile + " below lower percentile");
+            previous = reported;
+        }
+    }
+
+    @Test
+    void everySingleValueIsReportedWithinBucketError() {
+        final SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 10_000; i++) {
+            final long value = random.nextLong(1L << random.nextInt(1, 62));
+            final LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            final long reported = histogram.snapshot().getPercentile(50);
+            assertTrue(reported <= value && value - reported <= value * MAX_RELATIVE_ERROR,
+                    "value " + value + " reported " + reported);
+        }
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 16; value++)
+            histogram.record(value);
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        for (int value = 0; value < 16; value++)
+            assertEquals(value, snapshot.getPercentile((value + 1) * 100d / 16));
+    }
+
+    @Test
+    void edgeValues() {
+        final LatencyHistogram empty = new LatencyHistogram();
+        assertEquals(0, empty.snapshot().getPercentile(99));
+        assertEquals(0d, empty.snapshot().getMean());
+
+        final LatencyHistogram negative = new LatencyHistogram();
+        negative.record(-5);
+        assertEquals(0, negative.snapshot().getPercentile(100));
+        assertEquals(0, negative.snapshot().getMax());
+
+        final LatencyHistogram largest = new LatencyHistogram();
+        largest.record(Long.MAX_VALUE);
+        // last bucket has no upper bound, so its lowest value is reported
+        final long reported = largest.snapshot().getPercentile(100);
+        assertTrue(Long.MAX_VALUE - reported <= Long.MAX_VALUE * MAX_RELATIVE_ERROR);
+        assertEquals(1, largest.getCount());
+    }
+}
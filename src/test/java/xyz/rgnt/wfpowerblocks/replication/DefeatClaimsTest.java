@@ -0,0 +1,98 @@
+package xyz.rgnt.wfpowerblocks.replication;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefeatClaimsTest {
+
+    private static final String BLOCK = "castle";
+    private static final long WINDOW = 1_000;
+    private static final long TIMEOUT = 10_000;
+
+    private final Map<String, Long> epochs = new HashMap<>();
+
+    @Test
+    void singleClaimantRunsDefeatOnceAfterWindow() {
+        final DefeatClaims claims = new DefeatClaims("b", WINDOW, TIMEOUT);
+        assertTrue(claims.claim(BLOCK, 0, 0));
+        // hits during window do not claim again
+        assertFalse(claims.claim(BLOCK, 0, 500));
+
+        assertTrue(due(claims, WINDOW - 1).isEmpty());
+        assertEquals(List.of(BLOCK), due(claims, WINDOW));
+        assertTrue(due(claims, 2 * WINDOW).isEmpty());
+        assertFalse(claims.claim(BLOCK, 0, 3 * WINDOW));
+    }
+
+    @Test
+    void lowestLiveClaimantWins() {
+        final DefeatClaims a = new DefeatClaims("a", WINDOW, TIMEOUT);
+        final DefeatClaims b = new DefeatClaims("b", WINDOW, TIMEOUT);
+        a.claim(BLOCK, 0, 0);
+        b.claim(BLOCK, 0, 100);
+        a.seen("b", 100);
+        a.claimed(BLOCK, 0, "b");
+        b.seen("a", 100);
+        b.claimed(BLOCK, 0, "a");
+
+        assertEquals(List.of(BLOCK), due(a, WINDOW));
+        assertTrue(due(b, WINDOW + 100).isEmpty());
+
+        // respawn of winner ends epoch, so other claimant drops its claim
+        this.epochs.put(BLOCK, 1L);
+        assertTrue(due(b, 5 * WINDOW).isEmpty());
+        assertTrue(b.claim(BLOCK, 1, 5 * WINDOW));
+    }
+
+    @Test
+    void nextClaimantTakesOverWhenWinnerGoesDown() {
+        final DefeatClaims b = new DefeatClaims("b", WINDOW, TIMEOUT);
+        b.seen("a", 0);
+        b.claimed(BLOCK, 0, "a");
+        b.claim(BLOCK, 0, 0);
+
+        assertTrue(due(b, WINDOW).isEmpty());
+        assertTrue(due(b, TIMEOUT - 1).isEmpty());
+        // nothing arrived from winner since its claim
+        assertFalse(b.isLive("a", TIMEOUT));
+        assertEquals(List.of(BLOCK), due(b, TIMEOUT + WINDOW));
+    }
+
+    @Test
+    void claimantWhichWasNeverSeenDoesNotWin() {
+        final DefeatClaims b = new DefeatClaims("b", WINDOW, TIMEOUT);
+        b.claimed(BLOCK, 0, "a");
+        b.claim(BLOCK, 0, 0);
+        assertEquals(List.of(BLOCK), due(b, WINDOW));
+    }
+
+    @Test
+    void defeatRunElsewhereIsNotRunAgain() {
+        final DefeatClaims b = new DefeatClaims("b", WINDOW, TIMEOUT);
+        b.claim(BLOCK, 0, 0);
+        // block which cannot respawn keeps its epoch, defeat message marks it done
+        b.done(BLOCK, 0);
+        assertTrue(due(b, TIMEOUT * 2).isEmpty());
+        assertFalse(b.claim(BLOCK, 0, TIMEOUT * 2));
+    }
+
+    @Test
+    void olderEpochDoesNotReplaceNewerClaim() {
+        final DefeatClaims b = new DefeatClaims("b", WINDOW, TIMEOUT);
+        this.epochs.put(BLOCK, 2L);
+        b.claim(BLOCK, 2, 0);
+        b.seen("a", 0);
+        b.claimed(BLOCK, 1, "a");
+        b.done(BLOCK, 1);
+        assertEquals(List.of(BLOCK), due(b, WINDOW));
+    }
+
+    private List<String> due(DefeatClaims claims, long now) {
+        return claims.due(blockId -> this.epochs.getOrDefault(blockId, 0L), now);
+    }
+}
@@ -0,0 +1,176 @@
+package xyz.rgnt.wfpowerblocks.replication;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationStateTest {
+
+    private static final String BLOCK = "castle";
+    private static final UUID FIRST = new UUID(1, 1);
+    private static final UUID SECOND = new UUID(2, 2);
+
+    @Test
+    void mergeIsCommutativeAndIdempotent() {
+        final List<Update> updates = new ArrayList<>(List.of(
+                new Update("a", FIRST, 10),
+                new Update("a", FIRST, 25),
+                new Update("b", FIRST, 7),
+                new Update("b", SECOND, 3),
+                new Update("c", SECOND, 40),
+                new Update("b", SECOND, 12)
+        ));
+        // duplicated messages, for example repeated by full sync
+        updates.addAll(List.copyOf(updates));
+
+        final Random random = new Random(42);
+        JsonObject expected = null;
+        for (int round = 0; round < 20; round++) {
+            Collections.shuffle(updates, random);
+            final ReplicationState state = new ReplicationState();
+            final Map<UUID, Integer> applied = new HashMap<>();
+            for (Update update : updates)
+                applied.merge(update.attacker, state.merge(BLOCK, 0, update.node, update.attacker, update.value), Integer::sum);
+
+            // growth applied to local memory never counts same damage twice
+            assertEquals(25 + 7, (int) applied.get(FIRST));
+            assertEquals(12 + 40, (int) applied.get(SECOND));
+            assertEquals(25 + 7, state.total(BLOCK, FIRST));
+            assertEquals(12 + 40, state.total(BLOCK, SECOND));
+
+            if (expected == null)
+                expected = state.encode();
+            assertEquals(expected, state.encode());
+        }
+    }
+
+    @Test
+    void localDamageIsShippedOnce() {
+        final ReplicationState state = new ReplicationState();
+        state.record(BLOCK, "a", FIRST, 5);
+        state.record(BLOCK, "a", FIRST, 6);
+
+        assertEquals(11, state.slot(BLOCK, "a", FIRST));
+        assertEquals(Map.of(BLOCK, Set.of(FIRST)), state.drainDirty());
+        assertTrue(state.drainDirty().isEmpty());
+
+        state.markAllDirty("a");
+        assertEquals(Map.of(BLOCK, Set.of(FIRST)), state.drainDirty());
+    }
+
+    @Test
+    void newerEpochDiscardsStaleDamage() {
+        final ReplicationState state = new ReplicationState();
+        state.record(BLOCK, "a", FIRST, 30);
+        assertEquals(20, state.merge(BLOCK, 0, "b", SECOND, 20));
+
+        assertTrue(state.adopt(BLOCK, 1));
+        assertEquals(1, state.epoch(BLOCK));
+        assertEquals(0, state.total(BLOCK, FIRST));
+        assertEquals(0, state.total(BLOCK, SECOND));
+        assertTrue(state.drainDirty().isEmpty());
+
+        // damage of old epoch arriving after respawn is dropped
+        assertEquals(0, state.merge(BLOCK, 0, "b", SECOND, 50));
+        assertEquals(0, state.total(BLOCK, SECOND));
+        assertEquals(8, state.merge(BLOCK, 1, "b", SECOND, 8));
+
+        // respawn which was already adopted is ignored
+        assertFalse(state.adopt(BLOCK, 1));
+        assertEquals(8, state.total(BLOCK, SECOND));
+
+        assertEquals(2, state.respawn(BLOCK));
+        assertEquals(0, state.total(BLOCK, SECOND));
+    }
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        final ReplicationState state = new ReplicationState();
+        state.record(BLOCK, "a", FIRST, 30);
+        state.merge(BLOCK, 0, "b", SECOND, 20);
+        state.respawn("tower");
+        state.record("tower", "a", SECOND, 4);
+
+        final String encoded = state.encode().toString();
+        final ReplicationState decoded = new ReplicationState();
+        decoded.record("other", "a", FIRST, 1);
+        decoded.decode(new JsonParser().parse(encoded).getAsJsonObject());
+
+        assertEquals(state.encode(), decoded.encode());
+        assertEquals(30, decoded.slot(BLOCK, "a", FIRST));
+        assertEquals(20, decoded.slot(BLOCK, "b", SECOND));
+        assertEquals(1, decoded.epoch("tower"));
+        assertEquals(4, decoded.total("tower", SECOND));
+        assertEquals(0, decoded.total("other", FIRST));
+        // decoded state is already persisted, nothing is shipped until next damage or full sync
+        assertTrue(decoded.drainDirty().isEmpty());
+    }
+
+    @Test
+    void blockCountersRoundTripAlone() {
+        final ReplicationState state = new ReplicationState();
+        state.respawn(BLOCK);
+        state.record(BLOCK, "a", FIRST, 30);
+        state.merge(BLOCK, 1, "b", SECOND, 20);
+        // stored together with memory of block, so it does not depend on other blocks
+        final String encoded = state.encode(BLOCK).toString();
+
+        final ReplicationState restored = new ReplicationState();
+        restored.record("tower", "a", SECOND, 4);
+        restored.record(BLOCK, "a", FIRST, 99);
+        restored.decode(BLOCK, new JsonParser().parse(encoded).getAsJsonObject());
+
+        assertEquals(1, restored.epoch(BLOCK));
+        assertEquals(30, restored.slot(BLOCK, "a", FIRST));
+        assertEquals(20, restored.slot(BLOCK, "b", SECOND));
+        assertEquals(4, restored.total("tower", SECOND));
+        // merge of slot saved with memory does not grow it again
+        assertEquals(0, restored.merge(BLOCK, 1, "b", SECOND, 20));
+        assertEquals(Set.of("tower"), restored.drainDirty().keySet());
+
+        assertEquals(new JsonParser().parse("{\"epoch\":0,\"nodes\":{}}"), state.encode("unknown"));
+    }
+
+    @Test
+    void homeNodeHoldsMostDamageOfAttacker() {
+        final ReplicationState state = new ReplicationState();
+        assertNull(state.homeNode(BLOCK, FIRST));
+        state.record(BLOCK, "b", FIRST, 10);
+        state.merge(BLOCK, 0, "c", FIRST, 25);
+        state.merge(BLOCK, 0, "a", SECOND, 5);
+        assertEquals("c", state.homeNode(BLOCK, FIRST));
+        assertEquals("a", state.homeNode(BLOCK, SECOND));
+
+        // equal slots are resolved by lowest id, so every node picks same one
+        state.merge(BLOCK, 0, "a", FIRST, 25);
+        assertEquals("a", state.homeNode(BLOCK, FIRST));
+
+        state.respawn(BLOCK);
+        assertNull(state.homeNode(BLOCK, FIRST));
+    }
+
+    @Test
+    void decodeOfMissingDataClearsState() {
+        final ReplicationState state = new ReplicationState();
+        state.record(BLOCK, "a", FIRST, 30);
+        state.decode(null);
+        assertEquals(0, state.total(BLOCK, FIRST));
+        assertEquals(new JsonParser().parse("{\"blocks\":{}}"), state.encode());
+    }
+
+    private static class Update {
+        private final String node;
+        private final UUID attacker;
+        private final int value;
+
+        private Update(String node, UUID attacker, int value) {
+            this.node = node;
+            this.attacker = attacker;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package xyz.rgnt.wfpowerblocks.rewards;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DispatchJournalTest {
+
+    private static final UUID PLAYER = new UUID(7, 7);
+
+    @Test
+    void dispatchedCommandsAreNotRestored() throws Exception {
+        final File file = temporaryFile();
+        final DispatchJournal journal = new DispatchJournal(file);
+        assertTrue(journal.open().isEmpty());
+        journal.write(List.of(
+                DispatchJournal.queued(command(0, "give a")),
+                DispatchJournal.queued(command(1, "give \u017e")),
+                DispatchJournal.queued(command(2, "give c"))
+        ));
+        journal.write(List.of(DispatchJournal.done(new long[]{0, 2, 99}, 2)));
+        journal.close();
+
+        final DispatchJournal reopened = new DispatchJournal(file);
+        final List<DispatchJournal.Command> pending = reopened.open();
+        reopened.close();
+        assertEquals(1, pending.size());
+        assertEquals(1, pending.get(0).getSequence());
+        assertEquals("give \u017e", pending.get(0).getCommand());
+        assertEquals(PLAYER, pending.get(0).getPlayer());
+        assertTrue(pending.get(0).isSelf());
+    }
+
+    @Test
+    void openCompactsAndKeepsOrder() throws Exception {
+        final File file = temporaryFile();
+        final DispatchJournal journal = new DispatchJournal(file);
+        journal.open();
+        // sequences of parked commands are lower than of commands queued after them
+        journal.write(List.of(
+                DispatchJournal.queued(command(5, "e")),
+                DispatchJournal.queued(command(3, "c")),
+                DispatchJournal.queued(command(4, "d"))
+        ));
+        journal.write(List.of(DispatchJournal.done(new long[]{4}, 1)));
+        journal.close();
+        final long fullSize = file.length();
+
+        final DispatchJournal reopened = new DispatchJournal(file);
+        final List<DispatchJournal.Command> pending = reopened.open();
+        reopened.close();
+        assertEquals(List.of("c", "e"), List.of(pending.get(0).getCommand(), pending.get(1).getCommand()));
+        assertTrue(file.length() < fullSize);
+
+        final DispatchJournal again = new DispatchJournal(file);
+        assertEquals(2, again.open().size());
+        again.close();
+    }
+
+    @Test
+    void clearDropsEverything() throws Exception {
+        final File file = temporaryFile();
+        final DispatchJournal journal = new DispatchJournal(file);
+        journal.open();
+        journal.write(List.of(DispatchJournal.queued(command(0, "a"))));
+        journal.clear();
+        journal.write(List.of(DispatchJournal.queued(command(1, "b"))));
+        journal.close();
+
+        final DispatchJournal reopened = new DispatchJournal(file);
+        final List<DispatchJournal.Command> pending = reopened.open();
+        reopened.close();
+        assertEquals(1, pending.size());
+        assertEquals("b", pending.get(0).getCommand());
+    }
+
+    @Test
+    void truncatedRecordIsDropped() throws Exception {
+        final File file = temporaryFile();
+        final DispatchJournal journal = new DispatchJournal(file);
+        journal.open();
+        journal.write(List.of(DispatchJournal.queued(command(0, "kept")), DispatchJournal.queued(command(1, "torn"))));
+        journal.close();
+
+        final long firstLength = DispatchJournal.queued(command(0, "kept")).remaining();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(firstLength + 6);
+        }
+
+        final DispatchJournal reopened = new DispatchJournal(file);
+        final List<DispatchJournal.Command> pending = reopened.open();
+        // journal is writable after recovery
+        reopened.write(List.of(DispatchJournal.queued(command(2, "next"))));
+        reopened.close();
+        assertEquals(1, pending.size());
+        assertEquals("kept", pending.get(0).getCommand());
+
+        final DispatchJournal again = new DispatchJournal(file);
+        final List<DispatchJournal.Command> restored = again.open();
+        again.close();
+        assertEquals(List.of("kept", "next"), List.of(restored.get(0).getCommand(), restored.get(1).getCommand()));
+    }
+
+    @Test
+    void recordBuffersAreNotConsumed() throws Exception {
+        final ByteBuffer record = DispatchJournal.queued(command(0, "a"));
+        final int remaining = record.remaining();
+        final DispatchJournal journal = new DispatchJournal(temporaryFile());
+        journal.open();
+        journal.write(List.of(record));
+        journal.close();
+        assertEquals(remaining, record.remaining());
+    }
+
+    private static DispatchJournal.Command command(long sequence, String command) {
+        return new DispatchJournal.Command(sequence, PLAYER, command, true);
+    }
+
+    private static File temporaryFile() throws IOException {
+        final File directory = Files.createTempDirectory("dispatch-journal").toFile();
+        directory.deleteOnExit();
+        return new File(directory, "data/reward_dispatch.bin");
+    }
+}
@@ -0,0 +1,77 @@
+package xyz.rgnt.wfpowerblocks.rewards;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RewardCommandTest {
+
+    private static final UUID PLAYER_UUID = new UUID(0x1234, 0x5678);
+    private static final Player PLAYER = player("Steve", PLAYER_UUID);
+
+    @Test
+    void knownSlotsAreRendered() {
+        final RewardCommand command = RewardCommand.compile("give %player% diamond %damage% #%rank% %pwb_id% %uuid%");
+        assertFalse(command.isSelf());
+        assertEquals("give Steve diamond 42 #3 castle " + PLAYER_UUID, render(command));
+    }
+
+    @Test
+    void playerCommandDropsLeadingAt() {
+        final RewardCommand command = RewardCommand.compile("@msg %player% placed %rank%.");
+        assertTrue(command.isSelf());
+        assertEquals("msg Steve placed 3.", render(command));
+        assertEquals("@msg %player% placed %rank%.", command.toString());
+    }
+
+    @Test
+    void textThatIsNotTokenIsKept() {
+        assertEquals("say 100%% done", render(RewardCommand.compile("say 100%% done")));
+        assertEquals("say % not token % Steve", render(RewardCommand.compile("say % not token % %player%")));
+        // closing % of text with space opens next token
+        assertEquals("say 50% Steve", render(RewardCommand.compile("say 50% %player%")));
+        assertEquals("say %player", render(RewardCommand.compile("say %player")));
+        assertEquals("Steve3", render(RewardCommand.compile("%player%%rank%")));
+        assertEquals("", render(RewardCommand.compile("")));
+    }
+
+    @Test
+    void unknownTokensFallThroughToPlaceholders() {
+        final RewardCommand command = RewardCommand.compile("say %server_online% %player% %Player%");
+        final List<String> asked = new ArrayList<>();
+        final String rendered = command.render(PLAYER, "castle", 3, 42, (token, player) -> {
+            assertSame(PLAYER, player);
+            asked.add(token);
+            return token.equals("%server_online%") ? "7" : "?";
+        });
+        assertEquals("say 7 Steve ?", rendered);
+        // slot names are case sensitive, so only unknown tokens are resolved by placeholders
+        assertEquals(List.of("%server_online%", "%Player%"), asked);
+
+        // without PlaceholderAPI tokens are kept as they are
+        assertEquals("say %server_online% Steve %Player%", render(command));
+    }
+
+    private static String render(RewardCommand command) {
+        return command.render(PLAYER, "castle", 3, 42, null);
+    }
+
+    private static Player player(String name, UUID uuid) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "getUniqueId":
+                    return uuid;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,153 @@
+package xyz.rgnt.wfpowerblocks.rewards;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RewardQueueTest {
+
+    private static final UUID FIRST = new UUID(1, 1);
+    private static final UUID SECOND = new UUID(2, 2);
+
+    @Test
+    void addClaimAndReopen() throws Exception {
+        final File file = temporaryFile();
+        final RewardQueue queue = open(file);
+        queue.addAll(List.of(
+                Map.entry(FIRST, new RewardQueue.Reward("castle", 1, 100)),
+                Map.entry(SECOND, new RewardQueue.Reward("castle", 2, 50)),
+                Map.entry(FIRST, new RewardQueue.Reward("tower", 3, 7))
+        ));
+        assertEquals(3, queue.getSize());
+        assertEquals(2, queue.getPlayerCount());
+        assertEquals(List.of("castle:1:100", "tower:3:7"), describe(queue.peek(FIRST)));
+
+        assertEquals(List.of("castle:2:50"), describe(queue.take(SECOND)));
+        assertFalse(queue.hasRewards(SECOND));
+        queue.close();
+
+        final RewardQueue reopened = open(file);
+        assertEquals(2, reopened.getSize());
+        assertEquals(List.of("castle:1:100", "tower:3:7"), describe(reopened.peek(FIRST)));
+        assertTrue(reopened.peek(SECOND).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void reservedRewardsAreNotHandedOutAgain() throws Exception {
+        final File file = temporaryFile();
+        final RewardQueue queue = open(file);
+        queue.addAll(List.of(Map.entry(FIRST, new RewardQueue.Reward("castle", 1, 100))));
+        final List<RewardQueue.Reward> login = queue.peek(FIRST);
+
+        // reward queued after login is kept for next join
+        queue.addAll(List.of(Map.entry(FIRST, new RewardQueue.Reward("tower", 2, 5))));
+        final List<RewardQueue.Reward> reserved = queue.reserve(FIRST, login);
+        assertEquals(List.of("castle:1:100"), describe(reserved));
+        assertEquals(List.of("tower:2:5"), describe(queue.peek(FIRST)));
+        assertEquals(1, queue.getSize());
+
+        // second login read same rewards before they were reserved
+        assertTrue(queue.reserve(FIRST, login).isEmpty());
+
+        // claim is not written yet, so reserved reward is pending after restart
+        queue.close();
+        final RewardQueue restarted = open(file);
+        assertEquals(2, restarted.getSize());
+        restarted.writeClaim(FIRST, 1);
+        restarted.close();
+
+        final RewardQueue claimed = open(file);
+        assertEquals(List.of("tower:2:5"), describe(claimed.peek(FIRST)));
+        claimed.close();
+    }
+
+    @Test
+    void compactKeepsPendingRewardsInOrder() throws Exception {
+        final File file = temporaryFile();
+        final RewardQueue queue = open(file);
+        for (int i = 0; i < 100; i++) {
+            queue.addAll(List.of(
+                    Map.entry(FIRST, new RewardQueue.Reward("castle", i, i)),
+                    Map.entry(SECOND, new RewardQueue.Reward("tower", i, i))
+            ));
+            if (i < 90)
+                queue.take(SECOND);
+        }
+        queue.close();
+        final long fullSize = file.length();
+
+        // most records are claimed, so file is compacted when opened
+        final RewardQueue compacted = open(file);
+        assertTrue(file.length() < fullSize);
+        assertEquals(110, compacted.getSize());
+        final List<RewardQueue.Reward> first = compacted.peek(FIRST);
+        assertEquals(100, first.size());
+        for (int i = 0; i < first.size(); i++)
+            assertEquals(i, first.get(i).getRank());
+        assertEquals("tower:90:90", describe(compacted.peek(SECOND)).get(0));
+
+        compacted.take(FIRST);
+        compacted.close();
+        final RewardQueue reopened = open(file);
+        assertFalse(reopened.hasRewards(FIRST));
+        assertEquals(10, reopened.getSize());
+        reopened.close();
+    }
+
+    @Test
+    void truncatedRecordIsDropped() throws Exception {
+        final File file = temporaryFile();
+        final RewardQueue queue = open(file);
+        queue.addAll(List.of(Map.entry(FIRST, new RewardQueue.Reward("castle", 1, 100))));
+        final long intact = file.length();
+        queue.addAll(List.of(Map.entry(SECOND, new RewardQueue.Reward("castle", 2, 50))));
+        queue.close();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(file.length() - 3);
+        }
+
+        final RewardQueue recovered = open(file);
+        assertEquals(intact, file.length());
+        assertEquals(List.of("castle:1:100"), describe(recovered.peek(FIRST)));
+        assertFalse(recovered.hasRewards(SECOND));
+
+        // queue stays writable after recovery
+        recovered.addAll(List.of(Map.entry(SECOND, new RewardQueue.Reward("tower", 3, 1))));
+        recovered.close();
+        final RewardQueue reopened = open(file);
+        assertEquals(List.of("tower:3:1"), describe(reopened.peek(SECOND)));
+        assertEquals(2, reopened.getSize());
+        reopened.close();
+    }
+
+    private static RewardQueue open(File file) throws IOException {
+        final RewardQueue queue = new RewardQueue(file);
+        queue.open();
+        return queue;
+    }
+
+    private static List<String> describe(List<RewardQueue.Reward> rewards) {
+        final List<String> described = new ArrayList<>(rewards.size());
+        for (RewardQueue.Reward reward : rewards)
+            described.add(reward.getBlockId() + ":" + reward.getRank() + ":" + reward.getDamage());
+        return described;
+    }
+
+    private static File temporaryFile() throws IOException {
+        final File directory = Files.createTempDirectory("reward-queue").toFile();
+        directory.deleteOnExit();
+        return new File(directory, "data/reward_queue.bin");
+    }
+}